@@ -0,0 +1,334 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Count the accesses in many log files at once, such as the
+ * rotated logs of several web servers, and combine the counts.
+ * Files compressed with gzip are decompressed as they are read.
+ * 
+ * The files are given as a directory, whose files are all read,
+ * or as a glob pattern such as "logs/access-*.log".
+ * Each file is counted in a task of its own, on a virtual thread
+ * where Java provides them and otherwise on a pool of threads.
+ * A limit on the number of files being read at once keeps the
+ * disk busy without swamping it. The counts of each file are
+ * merged into the total as soon as the file is finished, and
+ * the time taken by each file is kept for printTimings.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class BatchLogAnalyzer
+{
+    // The files to be analyzed.
+    private List<File> files;
+    // The most files to read at once.
+    private int concurrency;
+    // The results for each file of the last analysis, in the order finished.
+    private List<FileResult> results;
+    // How long the last analysis took, in nanoseconds.
+    private long elapsed;
+
+    /**
+     * Create an analyzer for a directory or glob pattern, reading
+     * as many files at once as there are processors.
+     * @param pattern A directory, a glob pattern or a single file.
+     */
+    public BatchLogAnalyzer(String pattern) throws IOException
+    {
+        this(pattern, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Create an analyzer for a directory or glob pattern.
+     * @param pattern A directory, a glob pattern or a single file.
+     * @param concurrency The most files to read at once (at least 1).
+     */
+    public BatchLogAnalyzer(String pattern, int concurrency) throws IOException
+    {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("At least one file must be read at once: "
+                                               + concurrency);
+        }
+        files = findFiles(pattern);
+        this.concurrency = concurrency;
+        results = new ArrayList<>();
+    }
+    
+    /**
+     * Count every access in every file.
+     * @param year The year whose status codes are to be reported.
+     * @return The combined counts.
+     */
+    public LogCounts analyze(int year) throws IOException
+    {
+        long start = System.nanoTime();
+        results = new ArrayList<>();
+        LogCounts total = new LogCounts(year);
+        Semaphore reading = new Semaphore(concurrency);
+        ExecutorService executor = newExecutor(concurrency);
+        try {
+            CompletionService<FileResult> finished = new ExecutorCompletionService<>(executor);
+            for(File file : files) {
+                finished.submit(() -> {
+                    reading.acquire();
+                    try {
+                        return analyzeFile(file, year);
+                    }
+                    finally {
+                        reading.release();
+                    }
+                });
+            }
+            for(int i = 0; i < files.size(); i++) {
+                FileResult result = finished.take().get();
+                total.merge(result.counts);
+                // The counts are no longer needed once merged.
+                result.counts = null;
+                results.add(result);
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing " + files.size() + " files", e);
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Problem analyzing a log file", cause);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        elapsed = System.nanoTime() - start;
+        return total;
+    }
+    
+    /**
+     * Print the time taken by each file in the last analysis,
+     * slowest first, followed by the total.
+     */
+    public void printTimings()
+    {
+        List<FileResult> slowest = new ArrayList<>(results);
+        slowest.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+        long busy = 0;
+        for(FileResult result : slowest) {
+            System.out.printf("%-50s%10d lines%10.3f ms%s%n", result.file.getPath(),
+                              result.lines, result.nanos / 1e6,
+                              result.malformed > 0 ? " (" + result.malformed + " malformed)" : "");
+            busy += result.nanos;
+        }
+        System.out.printf("%d files in %.3f ms (%.3f ms of work, %.1fx overlap)%n",
+                          results.size(), elapsed / 1e6, busy / 1e6,
+                          elapsed == 0 ? 0 : (double) busy / elapsed);
+    }
+    
+    /**
+     * @return The files to be analyzed, in order of name.
+     */
+    public List<File> getFiles()
+    {
+        return Collections.unmodifiableList(files);
+    }
+    
+    /**
+     * @return The results for each file of the last analysis,
+     *         in the order in which the files were finished.
+     */
+    public List<FileResult> getResults()
+    {
+        return Collections.unmodifiableList(results);
+    }
+    
+    /**
+     * Find the files named by a directory, glob pattern or file name.
+     * A glob pattern is matched below the directories that precede
+     * its first wildcard; "**" matches any number of directories.
+     * @param pattern The directory, pattern or file name.
+     * @return The regular files found, in order of name.
+     */
+    public static List<File> findFiles(String pattern) throws IOException
+    {
+        Path path = Paths.get(pattern);
+        List<File> found = new ArrayList<>();
+        if(Files.isDirectory(path)) {
+            try(Stream<Path> entries = Files.list(path)) {
+                entries.filter(Files::isRegularFile).forEach(entry -> found.add(entry.toFile()));
+            }
+        }
+        else if(!isGlob(pattern)) {
+            found.add(path.toFile());
+        }
+        else {
+            // Walk from the directories before the first wildcard.
+            Path base = Paths.get("");
+            int depth = 0;
+            boolean wild = false;
+            for(Path part : path) {
+                wild |= isGlob(part.toString());
+                if(!wild) {
+                    base = base.resolve(part);
+                }
+                else {
+                    depth = part.toString().contains("**") ? Integer.MAX_VALUE : depth + 1;
+                }
+            }
+            if(path.isAbsolute()) {
+                base = path.getRoot().resolve(base);
+            }
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            if(Files.isDirectory(base.toString().isEmpty() ? Paths.get(".") : base)) {
+                try(Stream<Path> entries = Files.walk(base, depth)) {
+                    entries.filter(entry -> Files.isRegularFile(entry) && matcher.matches(entry))
+                           .forEach(entry -> found.add(entry.toFile()));
+                }
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+    
+    /**
+     * Count the accesses in one file, skipping malformed lines.
+     * @param file The log file.
+     * @param year The year whose status codes are to be reported.
+     * @return The counts and timing for the file.
+     */
+    private static FileResult analyzeFile(File file, int year) throws IOException
+    {
+        long start = System.nanoTime();
+        FileResult result = new FileResult(file);
+        result.counts = new LogCounts(year);
+        int[] fields = new int[6];
+        if(CompressedLogInput.isCompressed(file)) {
+            LoglineParser parser = new LoglineParser((logline, problem) -> result.malformed++);
+            try(BufferedReader in = CompressedLogInput.openReader(file)) {
+                String logline;
+                while((logline = in.readLine()) != null) {
+                    LogMetrics.linesRead(1, logline.length() + 1);
+                    if(!logline.isBlank() && parser.parse(logline, fields)) {
+                        result.counts.record(fields[0], fields[1], fields[2], fields[3], fields[5]);
+                        result.lines++;
+                    }
+                }
+            }
+            result.nanos = System.nanoTime() - start;
+            return result;
+        }
+        try(MappedLogScanner scanner = new MappedLogScanner(file, 0, file.length(),
+                                                            (logline, problem) -> result.malformed++)) {
+            while(scanner.next(fields)) {
+                result.counts.record(fields[0], fields[1], fields[2], fields[3], fields[5]);
+                result.lines++;
+            }
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+    
+    /**
+     * Create an executor that runs each task on a virtual thread, if
+     * this version of Java has them, or else on a pool of threads.
+     * @param threads The size of the pool, if one is used.
+     * @return The executor.
+     */
+    private static ExecutorService newExecutor(int threads)
+    {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch(ReflectiveOperationException e) {
+            // Virtual threads were added in Java 21.
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+    
+    /**
+     * Does a name contain glob wildcards?
+     * @param name The name.
+     * @return true if it does.
+     */
+    private static boolean isGlob(String name)
+    {
+        return name.indexOf('*') >= 0 || name.indexOf('?') >= 0
+            || name.indexOf('[') >= 0 || name.indexOf('{') >= 0;
+    }
+    
+    /**
+     * The result of analyzing one file of a batch.
+     */
+    public static class FileResult
+    {
+        // The file analyzed.
+        private File file;
+        // The counts for the file, until they are merged.
+        private LogCounts counts;
+        // The number of lines counted, and of malformed lines skipped.
+        private long lines;
+        private long malformed;
+        // How long the file took, in nanoseconds.
+        private long nanos;
+        
+        /**
+         * Create an empty result.
+         * @param file The file analyzed.
+         */
+        private FileResult(File file)
+        {
+            this.file = file;
+        }
+        
+        /**
+         * @return The file analyzed.
+         */
+        public File getFile()
+        {
+            return file;
+        }
+        
+        /**
+         * @return The number of lines counted.
+         */
+        public long getLines()
+        {
+            return lines;
+        }
+        
+        /**
+         * @return The number of malformed lines skipped.
+         */
+        public long getMalformed()
+        {
+            return malformed;
+        }
+        
+        /**
+         * @return How long the file took, in milliseconds.
+         */
+        public double getMillis()
+        {
+            return nanos / 1e6;
+        }
+    }
+}
@@ -0,0 +1,560 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Open log files that may be compressed, so that they can be
+ * read as plain text without first decompressing them to disk.
+ * The compression is recognised from the first bytes of the file,
+ * whatever its name.
+ * 
+ * A gzip file is decompressed on a background thread, which
+ * passes blocks of text to the reader through a bounded queue,
+ * so decompression overlaps with parsing but cannot run far
+ * ahead of it. The first member is decompressed directly onto
+ * the queue. If more data follows its trailer, the file was made
+ * of several members, as written by bgzip, pigz or by concatenating
+ * rotated logs, and the rest are decompressed in parallel: the
+ * file is searched for the bytes that begin a member, each one is
+ * decompressed separately, and those that are not really the start
+ * of a member (the same bytes can occur in compressed data) are
+ * rejected because they do not follow on from the member before.
+ * Only a limited amount of text is held, in total, for members
+ * waiting to be read; a member that does not fit is decompressed
+ * again directly onto the queue when its turn comes.
+ * 
+ * zstd files are recognised, but cannot be read because Java
+ * has no zstd decoder.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class CompressedLogInput
+{
+    /**
+     * The kinds of file that are recognised.
+     */
+    public enum Compression
+    {
+        NONE, GZIP, ZSTD
+    }
+    
+    // The size of each block of decompressed text.
+    private static final int BLOCK_SIZE = 64 * 1024;
+    // How many blocks may wait in the queue.
+    private static final int QUEUE_BLOCKS = 16;
+    // The most text to hold for all the members decompressed ahead of time.
+    private static final long AHEAD_LIMIT = 64 * 1024 * 1024;
+    // Marks the end of the text in the queue.
+    private static final byte[] END = new byte[0];
+    // The gzip header flag bits, and the method for deflate.
+    private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16, DEFLATE = 8;
+
+    /**
+     * Find how a file is compressed, from its first bytes.
+     * @param file The file.
+     * @return The compression, NONE if the file is plain text.
+     */
+    public static Compression detect(File file) throws IOException
+    {
+        byte[] magic = new byte[4];
+        int length = 0;
+        try(InputStream in = new FileInputStream(file)) {
+            int count;
+            while(length < magic.length && (count = in.read(magic, length, magic.length - length)) > 0) {
+                length += count;
+            }
+        }
+        if(length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return Compression.GZIP;
+        }
+        if(length == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+           && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            return Compression.ZSTD;
+        }
+        return Compression.NONE;
+    }
+    
+    /**
+     * Is a file compressed?
+     * @param file The file.
+     * @return true if it is, false if it is plain text.
+     */
+    public static boolean isCompressed(File file) throws IOException
+    {
+        return detect(file) != Compression.NONE;
+    }
+    
+    /**
+     * Open a file as a stream of plain text, decompressing it if necessary.
+     * @param file The file.
+     * @return The stream, which must be closed.
+     */
+    public static InputStream open(File file) throws IOException
+    {
+        switch(detect(file)) {
+            case GZIP:
+                return new QueueInputStream(file);
+            case ZSTD:
+                throw new IOException("Cannot read " + file + ": zstd compression is not supported");
+            default:
+                return new FileInputStream(file);
+        }
+    }
+    
+    /**
+     * Open a file for reading lines of text, decompressing it if necessary.
+     * @param file The file.
+     * @return The reader, which must be closed.
+     */
+    public static BufferedReader openReader(File file) throws IOException
+    {
+        return new BufferedReader(new InputStreamReader(open(file), StandardCharsets.ISO_8859_1),
+                                  BLOCK_SIZE);
+    }
+    
+    /**
+     * Decompress the gzip members of a file, passing the text of each
+     * to a queue in the order of the file. The first member is
+     * decompressed directly; any after it are decompressed in parallel.
+     * Members are found by searching for their headers; one that
+     * does not start where the previous member ends is ignored.
+     * @param file The file.
+     * @param queue Where to put the blocks of text.
+     * @param stream The stream being fed, to check if it has been closed.
+     */
+    private static void decompressMembers(File file, BlockingQueue<byte[]> queue,
+                                          QueueInputStream stream)
+        throws IOException, InterruptedException
+    {
+        ByteBuffer data;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Member first = inflate(data, 0, queue, new Member(null));
+        if(first.error != null) {
+            throw new IOException("Corrupt gzip member at byte 0 of " + file + ": " + first.error);
+        }
+        int position = first.end;
+        if(findHeader(data, position) != position) {
+            // Only one member: anything after it is ignored, as GZIPInputStream does.
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // The text held by the candidates, which share AHEAD_LIMIT.
+        AtomicLong held = new AtomicLong();
+        try {
+            // Decompress a few candidates ahead of the one being passed on.
+            ArrayDeque<Integer> starts = new ArrayDeque<>();
+            ArrayDeque<Member> candidates = new ArrayDeque<>();
+            ArrayDeque<Future<Member>> members = new ArrayDeque<>();
+            int searched = position;
+            while(position < data.limit() && !stream.closed) {
+                searched = Math.max(searched, position);
+                while(members.size() < threads * 2 && searched < data.limit()) {
+                    int start = findHeader(data, searched);
+                    searched = start + 1;
+                    if(start < data.limit()) {
+                        Member candidate = new Member(held);
+                        starts.add(start);
+                        candidates.add(candidate);
+                        members.add(executor.submit(() -> inflate(data, start, null, candidate)));
+                    }
+                }
+                // Candidates before the end of the previous member were false.
+                while(!starts.isEmpty() && starts.peek() < position) {
+                    starts.poll();
+                    candidates.poll().abandon();
+                    members.poll().cancel(true);
+                }
+                Member member = null;
+                if(!starts.isEmpty() && starts.peek() == position) {
+                    starts.poll();
+                    candidates.poll();
+                    member = members.poll().get();
+                }
+                else if(findHeader(data, position) != position) {
+                    // Anything after the last member is ignored, as GZIPInputStream does.
+                    return;
+                }
+                if(member == null || member.error != null) {
+                    // A member must begin here: there was no room to hold it,
+                    // or the file is damaged. Decompress it again as it is read.
+                    member = inflate(data, position, queue, new Member(null));
+                    if(member.error != null) {
+                        throw new IOException("Corrupt gzip member at byte " + position
+                                              + " of " + file + ": " + member.error);
+                    }
+                }
+                else {
+                    // Its text leaves the limit to the other candidates as it is passed on.
+                    member.release();
+                    for(byte[] block : member.blocks) {
+                        queue.put(block);
+                    }
+                }
+                position = member.end;
+            }
+        }
+        catch(ExecutionException e) {
+            throw new IOException("Problem decompressing " + file, e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Find the next position that could be the start of a gzip member.
+     * @param data The file.
+     * @param from Where to start searching.
+     * @return The position, or the length of the file if there is none.
+     */
+    private static int findHeader(ByteBuffer data, int from)
+    {
+        for(int i = from; i + 3 < data.limit(); i++) {
+            if((data.get(i) & 0xff) == 0x1f && (data.get(i + 1) & 0xff) == 0x8b
+               && data.get(i + 2) == DEFLATE && (data.get(i + 3) & 0xe0) == 0) {
+                return i;
+            }
+        }
+        return data.limit();
+    }
+    
+    /**
+     * Decompress the gzip member that starts at a position, checking
+     * its length and CRC against those at the end of the member.
+     * @param data The file.
+     * @param start The position of the member's header.
+     * @param queue Where to put the text as it is decompressed, or
+     *              null to keep it in the member, while the text held
+     *              by all the members is within AHEAD_LIMIT.
+     * @param member The member to fill in.
+     * @return The member, with where it ends, or the reason it is
+     *         not a valid member.
+     */
+    private static Member inflate(ByteBuffer data, int start, BlockingQueue<byte[]> queue,
+                                  Member member)
+        throws InterruptedException
+    {
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        Inflater inflater = new Inflater(true);
+        try {
+            in.position(start + 3);
+            int flags = in.get() & 0xff;
+            // Skip the time, extra flags and operating system.
+            in.position(in.position() + 6);
+            if((flags & FEXTRA) != 0) {
+                in.position(in.position() + 2 + (in.getShort() & 0xffff));
+            }
+            if((flags & FNAME) != 0) {
+                while(in.get() != 0) {
+                }
+            }
+            if((flags & FCOMMENT) != 0) {
+                while(in.get() != 0) {
+                }
+            }
+            if((flags & FHCRC) != 0) {
+                in.position(in.position() + 2);
+            }
+            inflater.setInput(in);
+            CRC32 crc = new CRC32();
+            long length = 0;
+            byte[] block = new byte[BLOCK_SIZE];
+            int filled = 0;
+            while(!inflater.finished()) {
+                int count = inflater.inflate(block, filled, block.length - filled);
+                if(count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    member.error = "Unexpected end of compressed data";
+                    return member;
+                }
+                crc.update(block, filled, count);
+                length += count;
+                filled += count;
+                if(filled == block.length || inflater.finished()) {
+                    byte[] text = filled == block.length ? block : Arrays.copyOf(block, filled);
+                    if(queue != null) {
+                        queue.put(text);
+                    }
+                    else if(Thread.currentThread().isInterrupted() || !member.hold(text.length)) {
+                        member.error = "Not held";
+                        return member;
+                    }
+                    else {
+                        member.blocks.add(text);
+                    }
+                    block = new byte[BLOCK_SIZE];
+                    filled = 0;
+                }
+            }
+            // The Inflater reads ahead, so find the trailer from what it left.
+            in.position(in.limit() - inflater.getRemaining());
+            long expectedCrc = in.getInt() & 0xffffffffL;
+            long expectedLength = in.getInt() & 0xffffffffL;
+            if(expectedCrc != crc.getValue() || expectedLength != (length & 0xffffffffL)) {
+                member.error = "CRC or length does not match";
+                return member;
+            }
+            member.end = in.position();
+        }
+        catch(DataFormatException | RuntimeException e) {
+            member.error = e.toString();
+        }
+        finally {
+            inflater.end();
+            if(member.error != null) {
+                member.release();
+            }
+        }
+        return member;
+    }
+    
+    /**
+     * The decompressed text of one gzip member. A member decompressed
+     * ahead of time counts the text it holds against a total shared
+     * with the other members, until it is passed on or abandoned.
+     */
+    private static class Member
+    {
+        // The text, in blocks.
+        private List<byte[]> blocks = new ArrayList<>();
+        // The position just past the end of the member.
+        private int end;
+        // Why the member could not be decompressed, or null.
+        private String error;
+        // The text held by all the members sharing the limit, or
+        // null if the member is decompressed directly onto the queue.
+        private final AtomicLong shared;
+        // The text this member holds.
+        private long held;
+        // Whether the member is no longer wanted.
+        private boolean abandoned;
+        
+        /**
+         * Create an empty member.
+         * @param shared The text held by all the members sharing
+         *               AHEAD_LIMIT, or null if none is to be held.
+         */
+        public Member(AtomicLong shared)
+        {
+            this.shared = shared;
+        }
+        
+        /**
+         * Count more text as held, if there is room for it.
+         * @param bytes The length of the text.
+         * @return true if there was room, false if not or if the
+         *         member has been abandoned.
+         */
+        public synchronized boolean hold(int bytes)
+        {
+            if(abandoned || shared == null) {
+                return false;
+            }
+            if(shared.addAndGet(bytes) > AHEAD_LIMIT) {
+                shared.addAndGet(-bytes);
+                return false;
+            }
+            held += bytes;
+            return true;
+        }
+        
+        /**
+         * Stop counting the text of this member as held.
+         */
+        public synchronized void release()
+        {
+            if(shared != null) {
+                shared.addAndGet(-held);
+            }
+            held = 0;
+        }
+        
+        /**
+         * Give up the member, so it holds no more text.
+         */
+        public synchronized void abandon()
+        {
+            abandoned = true;
+            release();
+        }
+    }
+    
+    /**
+     * A stream of the text of a gzip file, which is decompressed
+     * by a background thread and passed on in blocks.
+     */
+    private static class QueueInputStream extends InputStream
+    {
+        // The blocks of text waiting to be read.
+        private BlockingQueue<byte[]> queue;
+        // The block being read, and the position in it.
+        private byte[] block;
+        private int position;
+        // Why decompression failed, or null.
+        private volatile IOException failure;
+        // Set when the reader is finished, to stop the background thread.
+        private volatile boolean closed;
+        // The background thread.
+        private Thread decompressor;
+        
+        /**
+         * Start decompressing a file.
+         * @param file The gzip file.
+         */
+        public QueueInputStream(File file) throws IOException
+        {
+            queue = new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+            block = new byte[0];
+            // A file too large to map in one piece is read as a stream.
+            boolean mapped = file.length() <= Integer.MAX_VALUE;
+            decompressor = new Thread(() -> {
+                try {
+                    if(mapped) {
+                        decompressMembers(file, queue, this);
+                    }
+                    else {
+                        decompress(file);
+                    }
+                }
+                catch(IOException e) {
+                    failure = e;
+                }
+                catch(InterruptedException e) {
+                    // The reader has closed the stream.
+                }
+                finally {
+                    try {
+                        if(!closed) {
+                            queue.put(END);
+                        }
+                    }
+                    catch(InterruptedException e) {
+                        // The reader has closed the stream.
+                    }
+                }
+            }, "Decompress " + file.getName());
+            decompressor.setDaemon(true);
+            decompressor.start();
+        }
+        
+        /**
+         * @return The next byte of text, or -1 at the end.
+         */
+        public int read() throws IOException
+        {
+            if(!fill()) {
+                return -1;
+            }
+            return block[position++] & 0xff;
+        }
+        
+        /**
+         * Read some bytes of text.
+         * @param buffer Where to put them.
+         * @param offset Where to put the first.
+         * @param length The most to read.
+         * @return The number read, or -1 at the end.
+         */
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            if(length == 0) {
+                return 0;
+            }
+            if(!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, block.length - position);
+            System.arraycopy(block, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+        
+        /**
+         * Stop decompressing.
+         */
+        public void close()
+        {
+            closed = true;
+            decompressor.interrupt();
+            queue.clear();
+        }
+        
+        /**
+         * Make sure there is text in the current block.
+         * @return false at the end of the text.
+         */
+        private boolean fill() throws IOException
+        {
+            while(position == block.length) {
+                if(block == END || closed) {
+                    return false;
+                }
+                try {
+                    block = queue.take();
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while reading compressed log", e);
+                }
+                position = 0;
+                if(block == END) {
+                    if(failure != null) {
+                        throw failure;
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Decompress a file one member after another.
+         * @param file The gzip file.
+         */
+        private void decompress(File file) throws IOException, InterruptedException
+        {
+            try(InputStream in = new GZIPInputStream(new FileInputStream(file), BLOCK_SIZE)) {
+                while(!closed) {
+                    byte[] text = new byte[BLOCK_SIZE];
+                    int filled = 0;
+                    int count;
+                    while(filled < text.length
+                          && (count = in.read(text, filled, text.length - filled)) > 0) {
+                        filled += count;
+                    }
+                    if(filled == 0) {
+                        return;
+                    }
+                    queue.put(filled == text.length ? text : Arrays.copyOf(text, filled));
+                }
+            }
+        }
+    }
+}
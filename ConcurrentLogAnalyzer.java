@@ -0,0 +1,270 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count web accesses supplied by any number of threads at once,
+ * e.g. one thread for each web server feeding lines as they are
+ * written. Entries, text lines and lines of bytes may be recorded
+ * from any thread, without locking.
+ * 
+ * Each count is a LongAdder, which spreads updates from different
+ * threads over separate cells, so threads recording at the same
+ * time rarely contend. The counts for each year are created the
+ * first time the year is seen, and each thread remembers the year
+ * it last recorded, so finding a year's counts writes nothing
+ * shared. snapshot adds the cells up into an
+ * ordinary LogCounts, which can be queried or printed as usual.
+ * 
+ * A snapshot taken while entries are still being recorded may
+ * include only part of them; once recording has finished, the
+ * snapshot is exact.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ConcurrentLogAnalyzer implements LogAggregator
+{
+    // The range of status codes counted individually.
+    private static final int FIRST_CODE = 100, LAST_CODE = 599;
+    
+    // Accesses by hour, day and month.
+    private final LongAdder[] hourCounts;
+    private final LongAdder[] dayCounts;
+    private final LongAdder[] monthCounts;
+    // The counts for each year seen.
+    private final Map<Integer, YearCounts> years;
+    // The number of lines that could not be parsed.
+    private final LongAdder malformedLines;
+    // Parses lines for recordLine, reporting malformed lines.
+    private final LoglineParser parser;
+    // What each thread keeps between the entries it records.
+    private final ThreadLocal<ThreadState> threadStates;
+
+    /**
+     * Create an analyzer with no accesses counted.
+     */
+    public ConcurrentLogAnalyzer()
+    {
+        hourCounts = adders(24);
+        dayCounts = adders(32);
+        monthCounts = adders(13);
+        years = new ConcurrentHashMap<>();
+        malformedLines = new LongAdder();
+        parser = new LoglineParser((logline, problem) -> malformedLines.increment());
+        threadStates = ThreadLocal.withInitial(ThreadState::new);
+    }
+    
+    /**
+     * Count an entry.
+     * @param entry The entry to be counted.
+     */
+    public void record(LogEntry entry)
+    {
+        record(threadStates.get(), entry.getYear(), entry.getMonth(), entry.getDay(),
+               entry.getHour(), entry.getCode());
+    }
+    
+    /**
+     * Count an access.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @param hour The hour (0-23)
+     * @param code HTTP response code
+     */
+    public void record(int year, int month, int day, int hour, int code)
+    {
+        record(threadStates.get(), year, month, day, hour, code);
+    }
+    
+    /**
+     * Parse and count a line of the log.
+     * @param logline The line.
+     * @return true if it was counted, false if it was malformed.
+     */
+    public boolean recordLine(CharSequence logline)
+    {
+        ThreadState state = threadStates.get();
+        int[] values = state.fields;
+        if(!parser.parse(logline, values)) {
+            return false;
+        }
+        record(state, values[0], values[1], values[2], values[3], values[5]);
+        return true;
+    }
+    
+    /**
+     * Parse and count a line of the log held in a byte array.
+     * @param buffer The bytes containing the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index just past the last byte of the line.
+     * @return true if it was counted, false if it was malformed.
+     */
+    public boolean recordLine(byte[] buffer, int start, int end)
+    {
+        ThreadState state = threadStates.get();
+        int[] values = state.fields;
+        if(!parser.parse(buffer, start, end, values)) {
+            return false;
+        }
+        record(state, values[0], values[1], values[2], values[3], values[5]);
+        return true;
+    }
+    
+    /**
+     * Add up the counts so far.
+     * @param statusYear The year whose status codes are to be reported.
+     * @return The counts, which will not change as more are recorded.
+     */
+    public LogCounts snapshot(int statusYear)
+    {
+        LogCounts counts = new LogCounts(statusYear);
+        for(int hour = 0; hour < hourCounts.length; hour++) {
+            counts.recordHour(hour, (int) hourCounts[hour].sum());
+        }
+        for(int day = 0; day < dayCounts.length; day++) {
+            counts.recordDay(day, (int) dayCounts[day].sum());
+        }
+        for(int month = 0; month < monthCounts.length; month++) {
+            counts.recordMonth(month, (int) monthCounts[month].sum());
+        }
+        for(YearCounts year : years.values()) {
+            year.addTo(counts);
+        }
+        return counts;
+    }
+    
+    /**
+     * @return The number of lines that could not be parsed.
+     */
+    public long getMalformedLines()
+    {
+        return malformedLines.sum();
+    }
+    
+    /**
+     * Count an access for the thread with the given state.
+     * @param state The state of the recording thread.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @param hour The hour (0-23)
+     * @param code HTTP response code
+     */
+    private void record(ThreadState state, int year, int month, int day, int hour, int code)
+    {
+        hourCounts[hour].increment();
+        dayCounts[day].increment();
+        monthCounts[month].increment();
+        YearCounts counts = state.lastYear;
+        if(counts == null || counts.year != year) {
+            counts = years.computeIfAbsent(year, YearCounts::new);
+            state.lastYear = counts;
+        }
+        counts.record(month, code);
+    }
+    
+    /**
+     * Create an array of counters.
+     * @param size The number of counters.
+     * @return The counters, each 0.
+     */
+    private static LongAdder[] adders(int size)
+    {
+        LongAdder[] adders = new LongAdder[size];
+        for(int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+    
+    /**
+     * What one thread keeps between the entries it records.
+     */
+    private static class ThreadState
+    {
+        // Where the thread parses its lines.
+        private final int[] fields = new int[6];
+        // The year the thread last recorded, which is usually the next one.
+        private YearCounts lastYear;
+    }
+    
+    /**
+     * The counts by month and status code for one year.
+     */
+    private static class YearCounts
+    {
+        // The year counted.
+        private final int year;
+        // Accesses in each month (1-12).
+        private final LongAdder[] months;
+        // Accesses with each code from 100 to 599 in each month,
+        // created when the month has its first such access.
+        private final AtomicReferenceArray<LongAdder[]> codes;
+        // Accesses with other codes in each month.
+        private final LongAdder[] otherCodes;
+        
+        /**
+         * Create the counts for a year.
+         * @param year The year.
+         */
+        public YearCounts(int year)
+        {
+            this.year = year;
+            months = adders(13);
+            codes = new AtomicReferenceArray<>(13);
+            otherCodes = adders(13);
+        }
+        
+        /**
+         * Count an access.
+         * @param month The month (1-12)
+         * @param code HTTP response code
+         */
+        public void record(int month, int code)
+        {
+            months[month].increment();
+            if(code >= FIRST_CODE && code <= LAST_CODE) {
+                LongAdder[] row = codes.get(month);
+                if(row == null) {
+                    codes.compareAndSet(month, null, adders(LAST_CODE - FIRST_CODE + 1));
+                    row = codes.get(month);
+                }
+                row[code - FIRST_CODE].increment();
+            }
+            else {
+                otherCodes[month].increment();
+            }
+        }
+        
+        /**
+         * Add these counts to a set of counts.
+         * @param counts The counts to add to.
+         */
+        public void addTo(LogCounts counts)
+        {
+            for(int month = 1; month < months.length; month++) {
+                long accesses = months[month].sum();
+                if(accesses == 0) {
+                    continue;
+                }
+                counts.recordYearMonth(year, month, (int) accesses);
+                LongAdder[] row = codes.get(month);
+                if(row != null) {
+                    for(int code = FIRST_CODE; code <= LAST_CODE; code++) {
+                        long count = row[code - FIRST_CODE].sum();
+                        if(count > 0) {
+                            counts.recordStatusCode(year, month, code, (int) count);
+                        }
+                    }
+                }
+                long other = otherCodes[month].sum();
+                if(other > 0) {
+                    counts.recordStatusCode(year, month, 0, (int) other);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Check that a ConcurrentLogAnalyzer fed from many threads at once
+ * counts exactly what a LogCounts fed from one thread does.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ConcurrentLogAnalyzerTest
+{
+    // The year whose status codes are reported.
+    private static final int YEAR = 2016;
+    // How many threads record at once.
+    private static final int THREADS = 8;
+    // How many entries each thread records.
+    private static final int ENTRIES_PER_THREAD = 50_000;
+
+    /**
+     * Record random entries from several threads, a third as entries,
+     * a third as text lines and a third as lines of bytes, while
+     * snapshots are taken, and compare the final counts.
+     */
+    @Test
+    public void concurrentRecordingIsExact() throws InterruptedException
+    {
+        LogfileCreator creator = new LogfileCreator();
+        LogEntry[][] entries = new LogEntry[THREADS][ENTRIES_PER_THREAD];
+        LogCounts expected = new LogCounts(YEAR);
+        for(int t = 0; t < THREADS; t++) {
+            for(int i = 0; i < ENTRIES_PER_THREAD; i++) {
+                LogEntry entry = creator.createEntry();
+                entries[t][i] = entry;
+                expected.record(entry.getYear(), entry.getMonth(), entry.getDay(),
+                                entry.getHour(), entry.getCode());
+            }
+        }
+
+        ConcurrentLogAnalyzer analyzer = new ConcurrentLogAnalyzer();
+        record(analyzer, entries);
+
+        assertEquals(0, analyzer.getMalformedLines());
+        assertSameCounts(expected, analyzer.snapshot(YEAR));
+    }
+
+    /**
+     * Record entries that change year on every access from
+     * several threads, so each thread's remembered year is
+     * nearly always wrong, and compare the final counts.
+     */
+    @Test
+    public void changingYearsAreExact() throws InterruptedException
+    {
+        LogEntry[][] entries = new LogEntry[THREADS][ENTRIES_PER_THREAD];
+        LogCounts expected = new LogCounts(YEAR);
+        for(int t = 0; t < THREADS; t++) {
+            for(int i = 0; i < ENTRIES_PER_THREAD; i++) {
+                int year = 2010 + (i + t) % 10;
+                int month = 1 + i % 12;
+                int day = 1 + i % 28;
+                int hour = i % 24;
+                int code = 100 + i % 500;
+                entries[t][i] = new LogEntry(year, month, day, hour, 0, code);
+                expected.record(year, month, day, hour, code);
+            }
+        }
+
+        ConcurrentLogAnalyzer analyzer = new ConcurrentLogAnalyzer();
+        record(analyzer, entries);
+
+        assertSameCounts(expected, analyzer.snapshot(YEAR));
+    }
+
+    /**
+     * Check that malformed lines are counted rather than recorded.
+     */
+    @Test
+    public void malformedLinesAreCounted()
+    {
+        ConcurrentLogAnalyzer analyzer = new ConcurrentLogAnalyzer();
+        assertEquals(false, analyzer.recordLine("2016 x 01 00 00 200"));
+        assertEquals(false, analyzer.recordLine("2016 01 01 00 00 2147483648"));
+        assertEquals(true, analyzer.recordLine("2016 01 01 00 00 200"));
+        assertEquals(2, analyzer.getMalformedLines());
+        assertEquals(1, analyzer.snapshot(YEAR).numberOfAccesses());
+    }
+
+    /**
+     * Record each thread's entries in a thread of its own, all
+     * starting together, and take snapshots until they finish.
+     * @param analyzer The analyzer to record with.
+     * @param entries The entries for each thread.
+     */
+    private static void record(ConcurrentLogAnalyzer analyzer, LogEntry[][] entries)
+        throws InterruptedException
+    {
+        CountDownLatch startGate = new CountDownLatch(1);
+        Thread[] workers = new Thread[entries.length];
+        for(int t = 0; t < entries.length; t++) {
+            LogEntry[] mine = entries[t];
+            workers[t] = new Thread(() -> {
+                try {
+                    startGate.await();
+                }
+                catch(InterruptedException e) {
+                    return;
+                }
+                for(int i = 0; i < mine.length; i++) {
+                    LogEntry entry = mine[i];
+                    switch(i % 3) {
+                        case 0:
+                            analyzer.record(entry);
+                            break;
+                        case 1:
+                            analyzer.recordLine(entry.toString());
+                            break;
+                        default:
+                            byte[] line = entry.toString().getBytes(StandardCharsets.ISO_8859_1);
+                            analyzer.recordLine(line, 0, line.length);
+                            break;
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        startGate.countDown();
+        boolean running = true;
+        while(running) {
+            // A snapshot must be safe to take while the counts change.
+            analyzer.snapshot(YEAR);
+            running = false;
+            for(Thread worker : workers) {
+                running |= worker.isAlive();
+            }
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Check that every count of two sets of counts is the same.
+     * @param expected The counts made in one thread.
+     * @param actual The counts made concurrently.
+     */
+    private static void assertSameCounts(LogCounts expected, LogCounts actual)
+    {
+        assertArrayEquals("hours", expected.getHourCounts(), actual.getHourCounts());
+        assertArrayEquals("days", expected.getDayCounts(), actual.getDayCounts());
+        assertArrayEquals("months", expected.getMonthCounts(), actual.getMonthCounts());
+        assertEquals("first year", expected.getFirstYear(), actual.getFirstYear());
+        assertArrayEquals("year/month", expected.getYearMonth(), actual.getYearMonth());
+        int firstYear = expected.getFirstYear();
+        for(int year = firstYear; year < firstYear + expected.getYearMonth().length; year++) {
+            for(int month = 1; month <= 12; month++) {
+                for(int code = 100; code <= 599; code++) {
+                    assertEquals("code " + code + " in " + year + "/" + month,
+                                 expected.getStatusCount(year, month, code),
+                                 actual.getStatusCount(year, month, code));
+                }
+                for(int codeClass = 0; codeClass <= 5; codeClass++) {
+                    assertEquals("class " + codeClass + " in " + year + "/" + month,
+                                 expected.getClassCount(year, month, codeClass),
+                                 actual.getClassCount(year, month, codeClass));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Approximate counts of a very large number of keys, such as
+ * the number of accesses in each minute of a log, in a fixed
+ * amount of memory.
+ * 
+ * Each key is counted in one cell of each of several rows,
+ * chosen by a different hash for each row. A count is never
+ * underestimated, and with probability getConfidence() it is
+ * overestimated by no more than getErrorBound().
+ * 
+ * Sketches of the same size can be merged, so separate parts
+ * of a log can be counted independently.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class CountMinSketch
+{
+    // The number of cells in each row, a power of two.
+    private int width;
+    // The number of rows.
+    private int depth;
+    // The cells, row by row.
+    private long[] cells;
+    // The sum of all the counts added.
+    private long total;
+
+    /**
+     * Create a sketch for a given accuracy.
+     * @param epsilon The largest overestimate, as a fraction
+     *                of the total of the counts, e.g. 0.001.
+     * @param delta The chance of exceeding it, e.g. 0.01.
+     */
+    public CountMinSketch(double epsilon, double delta)
+    {
+        this((int) Math.ceil(Math.E / epsilon), (int) Math.ceil(Math.log(1 / delta)));
+    }
+    
+    /**
+     * Create a sketch of a given size.
+     * @param width The number of cells in each row, rounded up to a power of two.
+     * @param depth The number of rows.
+     */
+    public CountMinSketch(int width, int depth)
+    {
+        if(width < 1 || depth < 1) {
+            throw new IllegalArgumentException("The sketch must have a cell: "
+                                               + width + " by " + depth);
+        }
+        this.width = Math.max(Integer.highestOneBit(width - 1) << 1, 1);
+        this.depth = depth;
+        cells = new long[this.width * depth];
+    }
+    
+    /**
+     * Add to the count of a key.
+     * @param key The key.
+     * @param count The number to add.
+     */
+    public void add(long key, long count)
+    {
+        for(int row = 0; row < depth; row++) {
+            cells[row * width + cell(key, row)] += count;
+        }
+        total += count;
+    }
+    
+    /**
+     * Return the estimated count of a key.
+     * @param key The key.
+     * @return The smallest of its cells, which is at least its count.
+     */
+    public long count(long key)
+    {
+        long count = Long.MAX_VALUE;
+        for(int row = 0; row < depth; row++) {
+            count = Math.min(count, cells[row * width + cell(key, row)]);
+        }
+        return count;
+    }
+    
+    /**
+     * Return the estimated count of a key, with its range.
+     * @param key The key.
+     * @return The estimate.
+     */
+    public Estimate estimate(long key)
+    {
+        long count = count(key);
+        return new Estimate(count, Math.max(0, count - getErrorBound()), count, getConfidence());
+    }
+    
+    /**
+     * Add the counts of another sketch of the same size to this one.
+     * @param other The sketch to merge.
+     */
+    public void merge(CountMinSketch other)
+    {
+        if(other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Sketches of different sizes cannot be merged: "
+                                               + width + " by " + depth + " and "
+                                               + other.width + " by " + other.depth);
+        }
+        for(int i = 0; i < cells.length; i++) {
+            cells[i] += other.cells[i];
+        }
+        total += other.total;
+    }
+    
+    /**
+     * @return The largest likely overestimate of any count.
+     */
+    public long getErrorBound()
+    {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+    
+    /**
+     * @return The chance that no count is overestimated by
+     *         more than getErrorBound().
+     */
+    public double getConfidence()
+    {
+        return 1 - Math.exp(-depth);
+    }
+    
+    /**
+     * @return The sum of all the counts added.
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+    
+    /**
+     * Choose the cell of a key in a row.
+     * @param key The key.
+     * @param row The row.
+     * @return The index of the cell within the row.
+     */
+    private int cell(long key, int row)
+    {
+        // A different 64 bit mix of the key for each row.
+        long hash = key + (row + 1) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 31;
+        return (int) hash & (width - 1);
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The records of a log held as runs, for logs sorted by time.
+ * A busy log has many accesses in each minute, most of them with
+ * the same few status codes, so after sorting the records fall
+ * into runs of identical minutes and codes. Each run is held once,
+ * with its length, and the runs are grouped by the hour they fall
+ * in, with the total number of accesses in the hour.
+ *
+ * The counts can then be made directly from the runs: an hour's
+ * accesses are added to the hourly, daily and monthly counts in
+ * one step, and each run is added to the status code counts in
+ * one step, without expanding the runs back into entries.
+ *
+ * The runs can be saved to a file and read back with load. The
+ * file holds, for each hour, the difference of its time key from
+ * the hour before and the number of runs in it, then the minute,
+ * code and length of each run, with the numbers written in 7 bits
+ * per byte as in BinaryLogFormat.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class EncodedLogRuns
+{
+    // The first bytes of a saved file, "WRUN".
+    private static final int MAGIC = 0x5752554e;
+    // The version of the file format written.
+    private static final int VERSION = 1;
+    // The number of bits of a time key below the hour.
+    private static final int HOUR_SHIFT = LogEntry.HOUR_SHIFT;
+
+    // The LogEntry time key of each hour, with the minute 0.
+    private long[] hourKeys;
+    // The number of accesses in each hour.
+    private int[] hourTotals;
+    // The index of the first run of each hour.
+    private int[] hourFirstRun;
+    // How many hours are held.
+    private int hours;
+    // The minute, status code and length of each run.
+    private byte[] runMinutes;
+    private short[] runCodes;
+    private int[] runLengths;
+    // How many runs are held.
+    private int runs;
+    // The total number of accesses.
+    private long size;
+
+    /**
+     * Create an empty set of runs.
+     */
+    private EncodedLogRuns()
+    {
+        hourKeys = new long[64];
+        hourTotals = new int[64];
+        hourFirstRun = new int[64];
+        runMinutes = new byte[256];
+        runCodes = new short[256];
+        runLengths = new int[256];
+    }
+
+    /**
+     * Encode the records of a store as runs.
+     * The store is sorted first if necessary.
+     * @param store The records.
+     * @return The runs.
+     */
+    public static EncodedLogRuns encode(LogStore store)
+    {
+        store.sort();
+        EncodedLogRuns encoded = new EncodedLogRuns();
+        int count = store.size();
+        int i = 0;
+        while(i < count) {
+            long record = store.get(i);
+            int start = i;
+            while(i < count && store.get(i) == record) {
+                i++;
+            }
+            long timeKey = LogStore.timeKey(record);
+            encoded.addRun(timeKey >>> HOUR_SHIFT << HOUR_SHIFT, LogEntry.minuteOf(timeKey),
+                           LogStore.code(record), i - start);
+        }
+        return encoded;
+    }
+
+    /**
+     * Read the runs of a log file. The file may be one saved by
+     * save, a binary file written by BinaryLogFormat, or a text log,
+     * which may be compressed.
+     * @param file The file.
+     * @return The runs.
+     */
+    public static EncodedLogRuns load(File file) throws IOException
+    {
+        if(BinaryLogFormat.isBinary(file)) {
+            return encode(BinaryLogFormat.load(file));
+        }
+        // Only a saved file of runs is mapped; a text log may be too large.
+        if(!BinaryLogFormat.startsWith(file, MAGIC)) {
+            return encode(LogStore.load(file));
+        }
+        ByteBuffer data;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            data.getInt();
+            int version = data.getInt();
+            if(version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            int hourCount = data.getInt();
+            EncodedLogRuns encoded = new EncodedLogRuns();
+            long hourKey = 0;
+            for(int h = 0; h < hourCount; h++) {
+                hourKey += BinaryLogFormat.readVarLong(data) << HOUR_SHIFT;
+                long runCount = BinaryLogFormat.readVarLong(data);
+                for(long r = 0; r < runCount; r++) {
+                    int minute = data.get();
+                    int code = (int) BinaryLogFormat.readVarLong(data);
+                    encoded.addRun(hourKey, minute, code, (int) BinaryLogFormat.readVarLong(data));
+                }
+            }
+            LogMetrics.linesRead(encoded.size, data.limit());
+            return encoded;
+        }
+        catch(BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(file + " is a damaged file of runs", e);
+        }
+    }
+
+    /**
+     * Save the runs to a file, to be read back with load.
+     * @param file The file to write.
+     */
+    public void save(File file) throws IOException
+    {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(hours);
+            byte[] number = new byte[10];
+            long previous = 0;
+            for(int h = 0; h < hours; h++) {
+                writeVarLong(out, number, (hourKeys[h] - previous) >>> HOUR_SHIFT);
+                previous = hourKeys[h];
+                int end = lastRun(h);
+                writeVarLong(out, number, end - hourFirstRun[h]);
+                for(int r = hourFirstRun[h]; r < end; r++) {
+                    out.writeByte(runMinutes[r]);
+                    writeVarLong(out, number, runCodes[r]);
+                    writeVarLong(out, number, runLengths[r]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the accesses to every one of the counts, a whole hour
+     * or run at a time.
+     * @param counts The counts to be added to.
+     */
+    public void aggregate(LogCounts counts)
+    {
+        for(int h = 0; h < hours; h++) {
+            long hourKey = hourKeys[h];
+            int year = LogEntry.yearOf(hourKey);
+            int month = LogEntry.monthOf(hourKey);
+            int day = LogEntry.dayOf(hourKey);
+            int hour = LogEntry.hourOf(hourKey);
+            int total = hourTotals[h];
+            counts.recordHour(hour, total);
+            counts.recordDay(day, total);
+            counts.recordMonth(month, total);
+            counts.recordYearMonth(year, month, total);
+            int end = lastRun(h);
+            for(int r = hourFirstRun[h]; r < end; r++) {
+                counts.recordStatusCode(year, month, runCodes[r], runLengths[r]);
+            }
+        }
+    }
+
+    /**
+     * Add the accesses to a set of time buckets. For buckets of an
+     * hour or more a whole hour is added at a time, and for buckets
+     * of a minute a whole minute.
+     * @param buckets The buckets to be added to.
+     */
+    public void aggregate(TimeBuckets buckets)
+    {
+        boolean byMinute = buckets.getGranularity() == TimeBuckets.Granularity.MINUTE;
+        for(int h = 0; h < hours; h++) {
+            long hourKey = hourKeys[h];
+            int year = LogEntry.yearOf(hourKey);
+            int month = LogEntry.monthOf(hourKey);
+            int day = LogEntry.dayOf(hourKey);
+            int hour = LogEntry.hourOf(hourKey);
+            if(!byMinute) {
+                buckets.add(buckets.keyOf(year, month, day, hour, 0), hourTotals[h]);
+                continue;
+            }
+            long hourBucket = buckets.keyOf(year, month, day, hour, 0);
+            int end = lastRun(h);
+            int r = hourFirstRun[h];
+            // The runs of a minute are next to each other.
+            while(r < end) {
+                int minute = runMinutes[r];
+                int total = 0;
+                while(r < end && runMinutes[r] == minute) {
+                    total += runLengths[r++];
+                }
+                buckets.add(hourBucket + minute, total);
+            }
+        }
+    }
+
+    /**
+     * Pass every access to an aggregator, in order of time. The same
+     * LogEntry is passed for each, changed to show that access, so
+     * the aggregator must not keep a reference to it.
+     * @param aggregator The aggregator.
+     */
+    public void forEach(LogAggregator aggregator)
+    {
+        LogEntry view = new LogEntry();
+        int[] fields = new int[6];
+        for(int h = 0; h < hours; h++) {
+            LogStore.unpack(LogStore.pack(hourKeys[h], 0), fields);
+            int end = lastRun(h);
+            for(int r = hourFirstRun[h]; r < end; r++) {
+                fields[4] = runMinutes[r];
+                fields[5] = runCodes[r];
+                view.set(fields);
+                for(int i = 0; i < runLengths[r]; i++) {
+                    aggregator.record(view);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of accesses.
+     * @return The number of accesses.
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the number of runs of identical minutes and codes.
+     * @return The number of runs.
+     */
+    public int getRunCount()
+    {
+        return runs;
+    }
+
+    /**
+     * Return the number of hours with any accesses.
+     * @return The number of hours.
+     */
+    public int getHourCount()
+    {
+        return hours;
+    }
+
+    /**
+     * Add a run after those already held. Runs must be added
+     * in order of time.
+     * @param hourKey The time key of the hour, with the minute 0.
+     * @param minute The minute (0-59)
+     * @param code HTTP response code
+     * @param length The number of accesses in the run.
+     */
+    private void addRun(long hourKey, int minute, int code, int length)
+    {
+        if(hours == 0 || hourKeys[hours - 1] != hourKey) {
+            if(hours == hourKeys.length) {
+                hourKeys = Arrays.copyOf(hourKeys, hours * 2);
+                hourTotals = Arrays.copyOf(hourTotals, hours * 2);
+                hourFirstRun = Arrays.copyOf(hourFirstRun, hours * 2);
+            }
+            hourKeys[hours] = hourKey;
+            hourFirstRun[hours] = runs;
+            hours++;
+        }
+        if(runs == runLengths.length) {
+            runMinutes = Arrays.copyOf(runMinutes, runs * 2);
+            runCodes = Arrays.copyOf(runCodes, runs * 2);
+            runLengths = Arrays.copyOf(runLengths, runs * 2);
+        }
+        runMinutes[runs] = (byte) minute;
+        runCodes[runs] = (short) code;
+        runLengths[runs] = length;
+        runs++;
+        hourTotals[hours - 1] += length;
+        size += length;
+    }
+
+    /**
+     * Return the index after the last run of an hour.
+     * @param h The index of the hour.
+     * @return The index after its last run.
+     */
+    private int lastRun(int h)
+    {
+        return h + 1 < hours ? hourFirstRun[h + 1] : runs;
+    }
+
+    /**
+     * Write a number as BinaryLogFormat does.
+     * @param out Where to write it.
+     * @param number Room for the bytes of the number.
+     * @param value The number.
+     */
+    private static void writeVarLong(DataOutputStream out, byte[] number, long value)
+        throws IOException
+    {
+        out.write(number, 0, BinaryLogFormat.writeVarLong(number, 0, value));
+    }
+}
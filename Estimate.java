@@ -0,0 +1,85 @@
+/**
+ * An approximate answer, with the range in which the exact
+ * answer lies at a given level of confidence.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class Estimate
+{
+    // The estimated value.
+    private double value;
+    // The range in which the exact value lies.
+    private double low, high;
+    // The probability that the exact value is in the range.
+    private double confidence;
+
+    /**
+     * Create an estimate.
+     * @param value The estimated value.
+     * @param low The lowest the exact value is likely to be.
+     * @param high The highest the exact value is likely to be.
+     * @param confidence The probability that the exact value
+     *                   is between low and high (0-1).
+     */
+    public Estimate(double value, double low, double high, double confidence)
+    {
+        this.value = value;
+        this.low = low;
+        this.high = high;
+        this.confidence = confidence;
+    }
+    
+    /**
+     * @return The estimated value.
+     */
+    public double getValue()
+    {
+        return value;
+    }
+    
+    /**
+     * @return The lowest the exact value is likely to be.
+     */
+    public double getLow()
+    {
+        return low;
+    }
+    
+    /**
+     * @return The highest the exact value is likely to be.
+     */
+    public double getHigh()
+    {
+        return high;
+    }
+    
+    /**
+     * @return The probability that the exact value is
+     *         between getLow() and getHigh().
+     */
+    public double getConfidence()
+    {
+        return confidence;
+    }
+    
+    /**
+     * @return The estimate and its range, e.g.
+     *         "1520.0 (1480.2 to 1559.8, 95.00% confidence)".
+     */
+    public String toString()
+    {
+        return format(value) + " (" + format(low) + " to " + format(high) + ", "
+               + String.format("%.4g", confidence * 100) + "% confidence)";
+    }
+    
+    /**
+     * Format a value, with more places for fractions than for counts.
+     * @param value The value.
+     * @return The formatted value.
+     */
+    private static String format(double value)
+    {
+        return String.format(Math.abs(value) < 1 ? "%.4f" : "%.1f", value);
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * A consumer of log entries that builds up one analysis of
+ * the data, such as a set of hourly counts.
+ * Aggregators are handed every entry from a single pass
+ * over the log, so several analyses can share one traversal.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public interface LogAggregator
+{
+    /**
+     * Record a single entry from the log.
+     * @param entry The entry to be recorded.
+     */
+    void record(LogEntry entry);
+}
@@ -1,8 +1,24 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.ToIntFunction;
 
 /**
  * Read web server data and analyse hourly access patterns.
  * 
+ * The counts can be kept up to date while the log file is
+ * being written by following it (see follow). The query and
+ * print methods may be used from any thread while this happens.
+ * 
+ * The query and print methods analyze the log themselves if the
+ * counts they need have not been made, so they never report
+ * counts of zero just because no analyze method was called. The
+ * answers to the queries are kept until the counts next change,
+ * so asking again costs nothing. Running an analyze method again
+ * counts the log afresh rather than adding to the counts.
+ * 
  * @author Erik Cooke
  * @2019.10.14
  * 
@@ -11,22 +27,32 @@ import java.util.HashMap;
  */
 public class LogAnalyzer
 {
-    // Where to calculate the hourly access counts.
-    private int[] hourCounts;
+    // The parts of the counts, as bits of countedParts.
+    private static final int HOURS = 1, DAYS = 2, MONTHS = 4, YEAR_MONTH = 8,
+                             STATUS_CODES = 16, ALL_PARTS = 31;
+    // The queries whose answers are kept, as indexes of answers.
+    private static final int ACCESSES = 0, BUSIEST_HOUR = 1, QUIETEST_HOUR = 2,
+                             BUSIEST_TWO_HOUR = 3, BUSIEST_DAY = 4, QUIETEST_DAY = 5,
+                             BUSIEST_MONTH = 6, QUIETEST_MONTH = 7, QUERIES = 8;
+    
+    // Where to calculate the access counts.
+    private LogCounts counts;
     // Use a LogfileReader to access the data.
     private LogfileReader reader;
-    //Where to calculate the daily access counts.
-    private int[] dayCounts;
-    //Where to calculate the monthly access counts.
-    private int[] monthCounts;
-    //Where to calculate monthly access by year.
-    private int[][] yearMonth;
     //Holds names of the months.
     private final String[] monthNames;
     
-    //Where to calculate status codes per month per year
-    //[][0]:200,[][1]:403, [][2]:404
-    private int[][] codes = new int[13][3];
+    //Extra aggregators to be updated during analyzeAll.
+    private ArrayList<LogAggregator> aggregators;
+    //How many passes have been made over the log data.
+    private int passes;
+    //The parts of the counts that hold the log data.
+    private int countedParts;
+    //Changed whenever the counts change, so old answers can be recognised.
+    private long version;
+    //The answers to queries, with the version of the counts each came from.
+    private final int[] answers;
+    private final long[] answerVersions;
 
     /**
      * Create an object to analyze hourly web accesses.
@@ -34,54 +60,348 @@ public class LogAnalyzer
      */
     public LogAnalyzer(String filename)
     { 
-        // hourly access counts.
-        hourCounts = new int[24];
-        //daily access counts
-        dayCounts = new int[32];
-        //monthly access counts
-        monthCounts = new int[13];
-        // Create the reader to obtain the data.
-        reader = new LogfileReader(filename);
-        //Monthly access counts by year
-        yearMonth = new int[5][13];
+        this(new LogfileReader(filename));
+    }
+    
+    /**
+     * Create an object to analyze the web accesses supplied by a reader.
+     * @param reader The reader to obtain the data from,
+     *               e.g. one streaming a large file.
+     */
+    public LogAnalyzer(LogfileReader reader)
+    { 
+        // hourly, daily, monthly and status code counts.
+        counts = new LogCounts(0);
+        // The reader to obtain the data.
+        this.reader = reader;
         monthNames = new String[]{"","January","February","March","April","May","June",
                                   "July","August","September","October", "November","December"};
+        aggregators = new ArrayList<>();
+        answers = new int[QUERIES];
+        answerVersions = new long[QUERIES];
+        Arrays.fill(answerVersions, -1);
     }
 
     /**
-     * Run all of the analyze methods.
-     * analyzeHourlyData, analyzeDailyData, analyzeMonthyData, analyzeYearMonth, analyzeStatusCodes.
-     * @param year The year to use for analyzeStatusCodes
+     * Run all of the analyses in a single pass over the log data.
+     * The hourly, daily, monthly, year/month and status code counts
+     * are all made afresh, and any aggregators that have been added
+     * are updated.
+     * @param year The year to use for the status codes
      */
-    public void analyzeAll(int year)
+    public synchronized void analyzeAll(int year)
     {
-        analyzeHourlyData();
-        analyzeDailyData();
-        analyzeMonthlyData();
-        analyzeYearMonth();
-        analyzeStatusCodes(year);
+        counts.clear();
+        counts.setStatusYear(year);
+        ArrayList<LogAggregator> all = new ArrayList<>();
+        all.add(this::recordAll);
+        all.addAll(aggregators);
+        analyze("analyzeAll", all.toArray(new LogAggregator[all.size()]));
+        changed(ALL_PARTS);
     }
     
     /**
-     * Analyze the hourly access data from the log file.
+     * Run all of the analyses in parallel, as analyzeAll does,
+     * using one worker for each available processor.
+     * Aggregators that have been added are not updated.
+     * @param year The year to use for the status codes
      */
-    public void analyzeHourlyData()
+    public void analyzeParallel(int year) throws IOException
     {
-        reader.reset();
-        while(reader.hasNext()) {
-            LogEntry entry = reader.next();
-            int hour = entry.getHour();
-            hourCounts[hour]++;
+        analyzeParallel(year, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Run all of the analyses in parallel, as analyzeAll does.
+     * The log file is split into ranges of lines that are counted
+     * by separate workers, and the counts are then added together.
+     * If the reader is using simulated data, or the log file is
+     * compressed or binary and so cannot be split, analyzeAll is used.
+     * Aggregators that have been added are not updated.
+     * @param year The year to use for the status codes
+     * @param workers How many workers to use.
+     */
+    public void analyzeParallel(int year, int workers) throws IOException
+    {
+        if(!isPlainTextFile()) {
+            analyzeAll(year);
+            return;
+        }
+        long start = LogMetrics.start();
+        ParallelLogAnalyzer parallel = new ParallelLogAnalyzer(reader.getFile(), workers);
+        LogCounts added = parallel.analyze(year);
+        LogMetrics.analyzed("analyzeParallel", start, added.numberOfAccesses());
+        synchronized(this) {
+            passes++;
+            counts.clear();
+            counts.setStatusYear(year);
+            counts.merge(added);
+            changed(ALL_PARTS);
+        }
+    }
+    
+    /**
+     * Run all of the analyses, as analyzeAll does, from the rollup
+     * index saved alongside the log file. If there is no up to date
+     * rollup, one is built from the log and saved, so later analyses
+     * do not need to read the log at all.
+     * If the reader is using simulated data, or the log file is
+     * compressed or binary, analyzeAll is used.
+     * Aggregators that have been added are not updated.
+     * @param year The year to use for the status codes
+     */
+    public void analyzeFromRollup(int year) throws IOException
+    {
+        if(!isPlainTextFile()) {
+            analyzeAll(year);
+            return;
+        }
+        long start = LogMetrics.start();
+        LogCounts added = LogRollup.forLog(reader.getFile()).toCounts(year);
+        LogMetrics.analyzed("analyzeFromRollup", start, added.numberOfAccesses());
+        synchronized(this) {
+            counts.clear();
+            counts.setStatusYear(year);
+            counts.merge(added);
+            changed(ALL_PARTS);
+        }
+    }
+    
+    /**
+     * Run all of the analyses, as analyzeAll does, with a LogPipeline:
+     * the log file is read, parsed and counted by separate threads at
+     * the same time. The pipeline is returned so the time spent in
+     * each stage can be printed.
+     * If the reader is using simulated data, the log file is binary,
+     * or aggregators have been added, which the pipeline cannot
+     * update, analyzeAll is used and null is returned.
+     * @param year The year to use for the status codes
+     * @param parsers How many parsing threads to use.
+     * @return The pipeline, or null if none was used.
+     */
+    public LogPipeline analyzePipelined(int year, int parsers) throws IOException
+    {
+        if(reader.getFile() == null || reader.getMode() == LogfileReader.Mode.BINARY
+           || hasAggregators()) {
+            analyzeAll(year);
+            return null;
         }
+        long start = LogMetrics.start();
+        LogPipeline pipeline = new LogPipeline(reader.getFile(), parsers);
+        LogCounts added = pipeline.analyze(year);
+        LogMetrics.analyzed("analyzePipelined", start, added.numberOfAccesses());
+        synchronized(this) {
+            passes++;
+            counts.clear();
+            counts.setStatusYear(year);
+            counts.merge(added);
+            changed(ALL_PARTS);
+        }
+        return pipeline;
+    }
+
+    /**
+     * Run all of the analyses, as analyzeAll does, over a batch of
+     * log files, such as rotated logs. The counts are made afresh.
+     * The log file of this analyzer's reader is not read.
+     * Aggregators that have been added are not updated.
+     * @param pattern A directory, whose files are all read, or a glob
+     *                pattern such as "logs/access-*.log".
+     * @param year The year to use for the status codes
+     * @return The batch, whose timings can be printed.
+     */
+    public BatchLogAnalyzer analyzeBatch(String pattern, int year) throws IOException
+    {
+        return batch("analyzeBatch", pattern, year, true);
+    }
+
+    /**
+     * Count a batch of log files, as analyzeBatch does, adding their
+     * counts to those already made, e.g. for logs rotated since.
+     * If some parts of the counts have not been made, the log is
+     * analyzed first, as for addCounts.
+     * @param pattern A directory, whose files are all read, or a glob
+     *                pattern such as "logs/access-*.log".
+     * @param year The year to use for the status codes
+     * @return The batch, whose timings can be printed.
+     */
+    public BatchLogAnalyzer addBatch(String pattern, int year) throws IOException
+    {
+        return batch("addBatch", pattern, year, false);
+    }
+
+    /**
+     * Run all of the analyses, as analyzeAll does, over a log held as
+     * runs. The counts are made afresh, a run at a time rather than an
+     * entry at a time. The log file of this analyzer's reader is not
+     * read, but aggregators that have been added are passed every
+     * access in the runs.
+     * @param runs The runs, e.g. from EncodedLogRuns.load.
+     * @param year The year to use for the status codes
+     */
+    public synchronized void analyzeRuns(EncodedLogRuns runs, int year)
+    {
+        runs("analyzeRuns", runs, year, true);
+    }
+
+    /**
+     * Count a log held as runs, as analyzeRuns does, adding its
+     * counts to those already made. If some parts of the counts
+     * have not been made, the log is analyzed first, as for addCounts.
+     * @param runs The runs, e.g. from EncodedLogRuns.load.
+     * @param year The year to use for the status codes
+     */
+    public synchronized void addRuns(EncodedLogRuns runs, int year)
+    {
+        runs("addRuns", runs, year, false);
+    }
+
+    /**
+     * Count only the accesses in a range of times, optionally with a
+     * particular status code. The counts of this analyzer are not changed.
+     * The range is given as LogEntry time keys, such as
+     * LogEntry.timeKey(2017, 3, 1, 0, 0) to LogEntry.timeKey(2017, 4, 1, 0, 0)
+     * for March 2017.
+     * @param fromKey The time key of the start of the range.
+     * @param toKey The time key just after the end of the range.
+     * @param code Only count accesses with this status code,
+     *             or LogfileReader.ANY_CODE to count them all.
+     * @return The counts for the range. Status codes are reported
+     *         for the year in which the range starts.
+     */
+    public synchronized LogCounts analyzeRange(long fromKey, long toKey, int code)
+    {
+        LogCounts rangeCounts = new LogCounts(LogEntry.yearOf(fromKey));
+        reader.query(fromKey, toKey, code, entry ->
+            rangeCounts.record(entry.getYear(), entry.getMonth(), entry.getDay(),
+                               entry.getHour(), entry.getCode()));
+        return rangeCounts;
+    }
+    
+    /**
+     * Keep the counts up to date as lines are appended to the log file,
+     * by polling it in a background thread. The whole of the file is
+     * read by the first poll, so the counts should not already hold
+     * the data from this file.
+     * @param year The year to use for the status codes
+     * @param intervalMillis How long to wait between polls.
+     * @return The follower, which can be used to stop following.
+     */
+    public LogFollower follow(int year, long intervalMillis)
+    {
+        if(reader.getFile() == null) {
+            throw new IllegalStateException("There is no log file to follow.");
+        }
+        synchronized(this) {
+            counts.setStatusYear(year);
+        }
+        LogFollower follower = new LogFollower(reader.getFile(), this);
+        follower.start(intervalMillis);
+        return follower;
+    }
+    
+    /**
+     * Add a set of counts, such as those for newly written lines,
+     * to the counts calculated so far. If some parts of the counts
+     * have not been made, the log is analyzed first, so that every
+     * part holds the same data once the counts are added.
+     * @param added The counts to add.
+     */
+    public synchronized void addCounts(LogCounts added)
+    {
+        ensureCounted(ALL_PARTS);
+        counts.merge(added);
+        changed(ALL_PARTS);
+    }
+    
+    /**
+     * Record that a LogFollower reading the log from its start will
+     * supply all of the log data, so queries must not read the log
+     * themselves and adding its counts must not either.
+     */
+    synchronized void followedFromStart()
+    {
+        changed(ALL_PARTS);
+    }
+    
+    /**
+     * Return a copy of the counts calculated so far, which
+     * will not change as further data is analyzed.
+     * @return The copy of the counts.
+     */
+    public synchronized LogCounts snapshot()
+    {
+        LogCounts copy = new LogCounts(counts.getStatusYear());
+        copy.merge(counts);
+        return copy;
+    }
+    
+    /**
+     * Add an aggregator to be updated by analyzeAll.
+     * @param aggregator The aggregator to add.
+     */
+    public synchronized void addAggregator(LogAggregator aggregator)
+    {
+        aggregators.add(aggregator);
+    }
+    
+    /**
+     * Have any aggregators been added?
+     * @return true if there are aggregators to be updated.
+     */
+    private synchronized boolean hasAggregators()
+    {
+        return !aggregators.isEmpty();
+    }
+    
+    /**
+     * Return the number of passes made over the log data so far.
+     * @return The number of passes.
+     */
+    public synchronized int getPassCount()
+    {
+        return passes;
+    }
+    
+    /**
+     * Return a copy of the counts calculated so far, as snapshot
+     * does, since the counts themselves change while data is
+     * analyzed or followed.
+     * @return The copy of the counts.
+     */
+    public LogCounts getCounts()
+    {
+        return snapshot();
+    }
+    
+    /**
+     * Return the year whose status codes are counted.
+     * @return The year.
+     */
+    public synchronized int getStatusYear()
+    {
+        return counts.getStatusYear();
+    }
+    
+    /**
+     * Analyze the hourly access data from the log file.
+     */
+    public synchronized void analyzeHourlyData()
+    {
+        counts.clearHourCounts();
+        analyze("analyzeHourlyData", entry -> counts.recordHour(entry.getHour()));
+        changed(HOURS);
     }
 
     /**
      * Print the hourly counts.
-     * These should have been set with a prior
-     * call to analyzeHourlyData.
+     * The log is analyzed first if the hourly
+     * counts have not been made.
      */
-    public void printHourlyCounts()
+    public synchronized void printHourlyCounts()
     {
+        ensureCounted(HOURS);
+        int[] hourCounts = counts.getHourCounts();
         System.out.println("\nHr: Count");
         for(int hour = 0; hour < hourCounts.length; hour++) {
             System.out.printf("%3s%6s%n",hour + ":",hourCounts[hour]);
@@ -98,92 +418,57 @@ public class LogAnalyzer
     
     /**
      * Return the number of accesses recorded in the log file.
-     * These should have been set with a prior
-     * call to analyzeHourlyData.
+     * The log is analyzed first if the hourly
+     * counts have not been made.
      */
-    public int numberOfAccessess() {
-        int total = 0;
-        for(int i = 0;i < hourCounts.length;i++) {
-            total += hourCounts[i];
-        }
-        return total;
+    public synchronized int numberOfAccessess() {
+        return answer(ACCESSES, HOURS, LogCounts::numberOfAccesses);
     }
     
     /**
      * Returns the most active hour from the data.     
      * If there is more than one hour with the same amount it will return the first found
-     * These should have been set with a prior call to analyzeHourlyData.
-     */
-    public int busiestHour() {
-        int biggest = 0;
-        int busiest = 0;
-        for(int hour = 0;hour < hourCounts.length;hour++) {
-            if(hourCounts[hour] > biggest) {
-                biggest = hourCounts[hour];
-                busiest = hour;
-            }            
-        }
-        return busiest;
+     * The log is analyzed first if the hourly counts have not been made.
+     */
+    public synchronized int busiestHour() {
+        return answer(BUSIEST_HOUR, HOURS, LogCounts::busiestHour);
     }
     
     /**
      * Return the least active hour from the data.
      * Will return the first found if multiple hours are the lowest
-     * These should have been set with a prior call to analyzeHourlyData.
-     */
-    public int quietestHour() {
-        int leastVisits = hourCounts[0];
-        int quietest = 0;
-        for(int i = 1;i < hourCounts.length;i++) {
-            if(hourCounts[i] < leastVisits) {
-                leastVisits = hourCounts[i];
-                quietest = i;
-            }
-        }
-        return quietest;
+     * The log is analyzed first if the hourly counts have not been made.
+     */
+    public synchronized int quietestHour() {
+        return answer(QUIETEST_HOUR, HOURS, LogCounts::quietestHour);
     }
     
     /**
      * Returns the busiest 2 hour period from the data.
-     * These should have been set with a prior call to analyzeHourlyData.
-     */
-    public int busiestTwoHour() {
-        int busiest = 0;
-        int biggest = 0;
-        for(int i = 0;i < hourCounts.length;i++) {
-            if(i == hourCounts.length - 1) {
-                if(hourCounts[i] + hourCounts[0] > biggest) {
-                    biggest = hourCounts[i] + hourCounts[0];
-                    busiest = i;
-                }
-            }                    
-            else if(hourCounts[i] + hourCounts[i + 1] > biggest) {
-                    biggest = hourCounts[i] + hourCounts[i + 1];
-                    busiest = i;
-            }
-        }
-        return busiest;
+     * The log is analyzed first if the hourly counts have not been made.
+     */
+    public synchronized int busiestTwoHour() {
+        return answer(BUSIEST_TWO_HOUR, HOURS, LogCounts::busiestTwoHour);
     }
     
     /**
      * Analyze the daily access data from the log file.
      */
-    public void analyzeDailyData()
+    public synchronized void analyzeDailyData()
     {
-        reader.reset();
-        while(reader.hasNext()) {
-            LogEntry entry = reader.next();
-            int day = entry.getDay();
-            dayCounts[day]++;
-        }
+        counts.clearDayCounts();
+        analyze("analyzeDailyData", entry -> counts.recordDay(entry.getDay()));
+        changed(DAYS);
     }
     
     /**
      * Print daily counts
-     * These should have been set with a prior call to analyzeDailyData.
+     * The log is analyzed first if the daily counts have not been made.
      */
-    public void printDailyCounts()
+    public synchronized void printDailyCounts()
     {
+        ensureCounted(DAYS);
+        int[] dayCounts = counts.getDayCounts();
         System.out.println("\nDay: Count");
         for(int day = 1;day < dayCounts.length;day++) {
             System.out.printf("%4s%5s%n",day + ":",dayCounts[day]);
@@ -192,58 +477,41 @@ public class LogAnalyzer
     /**
      * Returns the quietest day.
      * If there are more than one day with same value, returns first found.
-     * These should have been set with a prior call to analyzeDailyData.
+     * The log is analyzed first if the daily counts have not been made.
      */
-    public int quietestDay()
+    public synchronized int quietestDay()
     {
-        int leastVisits = dayCounts[1];
-        int quietest = 0;
-        for(int day = 1;day < dayCounts.length;day++) {
-            if(dayCounts[day] < leastVisits) {
-                leastVisits = dayCounts[day];
-                quietest = day;
-            }
-        }
-        return quietest;
+        return answer(QUIETEST_DAY, DAYS, LogCounts::quietestDay);
     }
     
     /**
      * Returns the busiest day.
      * If there are more than one day with same value, returns first found.
-     * These should have been set with a prior call to analyzeDailyData.
+     * The log is analyzed first if the daily counts have not been made.
      */
-    public int busiestDay()
+    public synchronized int busiestDay()
     {
-        int mostVisits = 0;
-        int busiest = 0;
-        for(int day = 1;day < dayCounts.length;day++) {
-            if(dayCounts[day] > mostVisits) {
-                mostVisits = dayCounts[day];
-                busiest = day;
-            }
-        }
-        return busiest;
+        return answer(BUSIEST_DAY, DAYS, LogCounts::busiestDay);
     }
 
     /**
      * Analyze the monthly access data from the log file.
      */
-    public void analyzeMonthlyData()
+    public synchronized void analyzeMonthlyData()
     {
-        reader.reset();
-        while(reader.hasNext()) {
-            LogEntry entry = reader.next();
-            int month = entry.getMonth();
-            monthCounts[month]++;
-        }
+        counts.clearMonthCounts();
+        analyze("analyzeMonthlyData", entry -> counts.recordMonth(entry.getMonth()));
+        changed(MONTHS);
     }
     
     /**
      * Print monthly counts.
-     * These should have been set with a prior call to analyzeMonthlyData.
+     * The log is analyzed first if the monthly counts have not been made.
      */
-    public void printMonthlyCounts()
+    public synchronized void printMonthlyCounts()
     {
+        ensureCounted(MONTHS);
+        int[] monthCounts = counts.getMonthCounts();
         System.out.println("\n");
         System.out.printf("%11s%6s%n","Month:","Count");
         System.out.println("-----------------");
@@ -255,63 +523,84 @@ public class LogAnalyzer
     /**
      * Returns the quietest month.
      * If there is more than one month with same value, returns first found.
-     * These should have been set with a prior call to analyzeMonthlyData.
+     * The log is analyzed first if the monthly counts have not been made.
      */
-    public int quietestMonth()
+    public synchronized int quietestMonth()
     {
-        int leastVisits = monthCounts[1];
-        int quietest = 0;
-        for(int month = 1;month < monthCounts.length;month++) {
-            if(monthCounts[month] < leastVisits) {
-                leastVisits = monthCounts[month];
-                quietest = month;
-            }
-        }
-        return quietest;
+        return answer(QUIETEST_MONTH, MONTHS, LogCounts::quietestMonth);
     }
     
     /**
      * Returns the busiest month.
      * If there is more than one month with same value, returns first found.
-     * These should have been set with a prior call to analyzeMonthlyData.
+     * The log is analyzed first if the monthly counts have not been made.
      */
-    public int busiestMonth()
+    public synchronized int busiestMonth()
     {
-        int mostVisits = 0;
-        int busiest = 0;
-        for(int month = 1;month < monthCounts.length;month++) {
-            if(monthCounts[month] > mostVisits) {
-                mostVisits = monthCounts[month];
-                busiest = month;
-            }
-        }
-        return busiest;
+        return answer(BUSIEST_MONTH, MONTHS, LogCounts::busiestMonth);
     }
     
     /**
      * Analyze the monthly data by year from the log file.
      */
-    public void analyzeYearMonth()
+    public synchronized void analyzeYearMonth()
     {
-        reader.reset();        
-        while(reader.hasNext()) {
-            LogEntry entry = reader.next();
-            int year = entry.getYear();
-            int month = entry.getMonth();
-            yearMonth[year - 2015][month]++;
-        }
+        counts.clearYearMonth();
+        analyze("analyzeYearMonth", entry -> counts.recordYearMonth(entry.getYear(), entry.getMonth()));
+        changed(YEAR_MONTH);
+    }
+
+    /**
+     * Count the accesses in time buckets of one or more granularities,
+     * all in a single pass over the log file.
+     * @param buckets The buckets to be counted.
+     */
+    public void analyzeTimeBuckets(TimeBuckets... buckets)
+    {
+        analyze("analyzeTimeBuckets", buckets);
+    }
+
+    /**
+     * Return the busiest windows of time in the log file, busiest first,
+     * e.g. the ten busiest 15 minute windows starting every minute.
+     * @param granularity The unit of the window and step.
+     * @param window The length of each window.
+     * @param step The distance between the starts of the windows.
+     * @param k The number of windows to return.
+     * @return Up to k windows.
+     */
+    public List<TimeWindow> busiestWindows(TimeBuckets.Granularity granularity,
+                                           int window, int step, int k)
+    {
+        return windows(granularity).busiest(window, step, k);
+    }
+
+    /**
+     * Return the quietest windows of time in the log file, quietest first.
+     * @param granularity The unit of the window and step.
+     * @param window The length of each window.
+     * @param step The distance between the starts of the windows.
+     * @param k The number of windows to return.
+     * @return Up to k windows.
+     */
+    public List<TimeWindow> quietestWindows(TimeBuckets.Granularity granularity,
+                                            int window, int step, int k)
+    {
+        return windows(granularity).quietest(window, step, k);
     }
     
     /**
      * Prints out monthly access by year.
-     * These should have been set with a prior call to analyzeYearMonth.
+     * The log is analyzed first if the counts by year have not been made.
      */
-    public void printYearMonth()
+    public synchronized void printYearMonth()
     {
+        ensureCounted(YEAR_MONTH);
+        int[][] yearMonth = counts.getYearMonth();
         System.out.println("Monthy access by year");
         for(int year = 0;year < yearMonth.length;year++) {
             System.out.println("");
-            System.out.println(year + 2015);
+            System.out.println(year + counts.getFirstYear());
             for(int month = 1;month < 13;month++) {
                 System.out.format("%11s%5s%n",monthNames[month] + ": ", yearMonth[year][month]);
             }
@@ -320,61 +609,232 @@ public class LogAnalyzer
     
     /**
      * Prints out average accesses per month.  
-     * These should have been set with a prior call to analyzeMonthlyData and analyzeYearMonth.
+     * The log is analyzed first if the monthly counts and counts by year
+     * have not been made.
      */
-    public void averageAccessesPerMonth()
+    public synchronized void averageAccessesPerMonth()
     {
+        ensureCounted(MONTHS | YEAR_MONTH);
+        int[] monthCounts = counts.getMonthCounts();
+        // Only the years in the log, so gaps between them don't lower the average.
+        int years = Math.max(counts.getYearsWithAccesses(), 1);
         System.out.println("\nAverage Accesses Per Month");
         for(int month = 1;month < 13;month++) {
-            System.out.format("%-11s%5s%n",monthNames[month] + ":", monthCounts[month] / yearMonth.length);
+            System.out.format("%-11s%5s%n",monthNames[month] + ":", monthCounts[month] / years);
         }
     }
     
     /**
      * Analyze the status codes from the data of the log file.
-     * @param year The year to be analyzed.
+     * Every status code is counted for every year in the same pass.
+     * @param year The year to be printed by printStatusCodes.
      */
-    public void analyzeStatusCodes(int year)
+    public synchronized void analyzeStatusCodes(int year)
     {
-        reader.reset();
-        //Store the year in the array
-        codes[0][0] = year;
-        while(reader.hasNext()) {
-            LogEntry entry = reader.next();
-            int month = entry.getMonth();
-            if(entry.getYear() == year)
-            {
-                int code = entry.getCode();
-                switch(code)
-                {                
-                    case 200: 
-                        codes[month][0]++;
-                        break;                
-                    case 403: 
-                        codes[month][1]++;
-                        break;
-                    case 404: 
-                        codes[month][2]++;
-                        break;
-                }
-            }
-            
-        }
+        counts.clearStatusCodes();
+        counts.setStatusYear(year);
+        analyze("analyzeStatusCodes", entry -> counts.recordStatusCode(entry.getYear(), entry.getMonth(),
+                                                 entry.getCode()));
+        changed(STATUS_CODES);
     }
     
     /**
      * Prints out status codes by month.
-     * These should have been set with a prior call to analyzeStatusCodes.
+     * The log is analyzed first if the status code counts have not been made.
      */
-    public void printStatusCodes()
+    public synchronized void printStatusCodes()
     {
-        System.out.println("\nStatus Codes for year: " + codes[0][0]);
+        ensureCounted(STATUS_CODES);
+        int year = counts.getStatusYear();
+        System.out.println("\nStatus Codes for year: " + year);
         System.out.printf("%-11s%-12s%-11s%-11s%n",""," 200","403","404");
         System.out.printf("%11s%-12s%-11s%-11s%n","Month:"," Successful","Not Found","Forbidden");
         System.out.println("--------------------------------------------");
         for(int month = 1;month < 13;month++) {            
             System.out.printf("%11s%10s%10s%10s%n",monthNames[month] + ":",
-            codes[month][0],codes[month][1], codes[month][2]);
+            counts.getStatusCount(year, month, 200), counts.getStatusCount(year, month, 403),
+            counts.getStatusCount(year, month, 404));
         }
     }    
+    
+    /**
+     * Return the number of accesses with a status code.
+     * The log is analyzed first if the status code counts have not been made.
+     * @param year The year
+     * @param month The month (1-12), or 0 for the whole year.
+     * @param code HTTP response code (100-599)
+     * @return The number of accesses.
+     */
+    public synchronized int statusCount(int year, int month, int code)
+    {
+        ensureCounted(STATUS_CODES);
+        return counts.getStatusCount(year, month, code);
+    }
+    
+    /**
+     * Return the fraction of accesses with a 4xx or 5xx status code.
+     * The log is analyzed first if the status code counts have not been made.
+     * @param year The year
+     * @param month The month (1-12), or 0 for the whole year.
+     * @return The error rate, or 0 if there were no accesses.
+     */
+    public synchronized double errorRate(int year, int month)
+    {
+        ensureCounted(STATUS_CODES);
+        return counts.getErrorRate(year, month);
+    }
+    
+    /**
+     * Count the log data in buckets, ready to search for windows.
+     * @param granularity The size of the buckets.
+     * @return The windows of the buckets.
+     */
+    private SlidingWindows windows(TimeBuckets.Granularity granularity)
+    {
+        TimeBuckets buckets = new TimeBuckets(granularity);
+        analyze("windows", buckets);
+        return new SlidingWindows(buckets);
+    }
+    
+    /**
+     * Count a batch of log files.
+     * @param name The name of the analysis, for LogMetrics.
+     * @param pattern A directory or glob pattern.
+     * @param year The year to use for the status codes
+     * @param fresh Whether to clear the counts first,
+     *              rather than adding to them.
+     * @return The batch.
+     */
+    private BatchLogAnalyzer batch(String name, String pattern, int year, boolean fresh)
+        throws IOException
+    {
+        long start = LogMetrics.start();
+        BatchLogAnalyzer batch = new BatchLogAnalyzer(pattern);
+        LogCounts added = batch.analyze(year);
+        LogMetrics.analyzed(name, start, added.numberOfAccesses());
+        synchronized(this) {
+            if(fresh) {
+                counts.clear();
+            }
+            else {
+                ensureCounted(ALL_PARTS);
+            }
+            passes++;
+            counts.setStatusYear(year);
+            counts.merge(added);
+            changed(ALL_PARTS);
+        }
+        return batch;
+    }
+
+    /**
+     * Count a log held as runs.
+     * @param name The name of the analysis, for LogMetrics.
+     * @param runs The runs.
+     * @param year The year to use for the status codes
+     * @param fresh Whether to clear the counts first,
+     *              rather than adding to them.
+     */
+    private synchronized void runs(String name, EncodedLogRuns runs, int year, boolean fresh)
+    {
+        if(fresh) {
+            counts.clear();
+        }
+        else {
+            ensureCounted(ALL_PARTS);
+        }
+        long start = LogMetrics.start();
+        passes++;
+        counts.setStatusYear(year);
+        runs.aggregate(counts);
+        for(LogAggregator aggregator : aggregators) {
+            runs.forEach(aggregator);
+        }
+        changed(ALL_PARTS);
+        LogMetrics.analyzed(name, start, runs.size());
+    }
+    
+    /**
+     * Return the answer to a query, working it out only if the
+     * counts have changed since it was last asked.
+     * @param query The index of the query's answer.
+     * @param parts The parts of the counts that it needs.
+     * @param question How to work out the answer from the counts.
+     * @return The answer.
+     */
+    private int answer(int query, int parts, ToIntFunction<LogCounts> question)
+    {
+        ensureCounted(parts);
+        if(answerVersions[query] != version) {
+            answers[query] = question.applyAsInt(counts);
+            answerVersions[query] = version;
+        }
+        return answers[query];
+    }
+    
+    /**
+     * Analyze the log if some of the parts of the counts needed
+     * have not been made.
+     * @param parts The parts of the counts needed.
+     */
+    private void ensureCounted(int parts)
+    {
+        if((countedParts & parts) != parts) {
+            analyzeAll(counts.getStatusYear());
+        }
+    }
+    
+    /**
+     * Record that some parts of the counts have been made or
+     * added to, so any answers found before are out of date.
+     * @param parts The parts of the counts changed.
+     */
+    private void changed(int parts)
+    {
+        countedParts |= parts;
+        version++;
+    }
+    
+    /**
+     * Is the log data being read from a plain text file, which
+     * can be split into ranges of lines or scanned directly?
+     * @return true if it is.
+     */
+    private boolean isPlainTextFile() throws IOException
+    {
+        return reader.getFile() != null && reader.getMode() != LogfileReader.Mode.BINARY
+               && !CompressedLogInput.isCompressed(reader.getFile());
+    }
+    
+    /**
+     * Make a single pass over the log data, passing each
+     * entry to every one of the given aggregators.
+     * @param name The name of the analysis, for LogMetrics.
+     * @param consumers The aggregators to be updated.
+     */
+    private synchronized void analyze(String name, LogAggregator... consumers)
+    {
+        long start = LogMetrics.start();
+        long records = 0;
+        passes++;
+        reader.reset();
+        while(reader.hasNext()) {
+            LogEntry entry = reader.next();
+            for(LogAggregator consumer : consumers) {
+                consumer.record(entry);
+            }
+            records++;
+        }
+        LogMetrics.analyzed(name, start, records);
+    }
+    
+    /**
+     * Count an entry in every one of the counts.
+     * @param entry The entry to be counted.
+     */
+    private void recordAll(LogEntry entry)
+    {
+        counts.record(entry.getYear(), entry.getMonth(), entry.getDay(),
+                      entry.getHour(), entry.getCode());
+    }
 }
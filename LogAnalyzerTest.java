@@ -0,0 +1,139 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check that a LogAnalyzer's answers stay correct when counts are
+ * added to it after only some of its analyses have been made.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogAnalyzerTest
+{
+    // The year of the entries.
+    private static final int YEAR = 2015;
+
+    // A log of five accesses on January 3rd.
+    private File log;
+
+    /**
+     * Write the log.
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        log = File.createTempFile("analyzer", ".log");
+        try(PrintWriter out = new PrintWriter(log)) {
+            for(int i = 0; i < 5; i++) {
+                out.println("2015 01 03 10 0" + i + " 200");
+            }
+        }
+    }
+
+    /**
+     * Remove the log.
+     */
+    @After
+    public void tearDown()
+    {
+        log.delete();
+    }
+
+    /**
+     * Add counts after only the hours have been counted; the
+     * days must still be counted from the log as well.
+     */
+    @Test
+    public void addCountsAfterPartialAnalysis()
+    {
+        LogAnalyzer analyzer = new LogAnalyzer(log.getPath());
+        analyzer.analyzeHourlyData();
+        analyzer.addCounts(countsForDay(20, 1));
+
+        assertEquals(3, analyzer.busiestDay());
+        assertEquals(10, analyzer.busiestHour());
+        assertEquals(6, analyzer.numberOfAccessess());
+        assertEquals(6, analyzer.statusCount(YEAR, 1, 200));
+    }
+
+    /**
+     * Add counts before any analysis has been made.
+     */
+    @Test
+    public void addCountsBeforeAnalysis()
+    {
+        LogAnalyzer analyzer = new LogAnalyzer(log.getPath());
+        analyzer.addCounts(countsForDay(20, 7));
+
+        assertEquals(20, analyzer.busiestDay());
+        assertEquals(12, analyzer.numberOfAccessess());
+    }
+
+    /**
+     * Add a batch of logs after only the status codes have been counted.
+     */
+    @Test
+    public void addBatchAfterPartialAnalysis() throws IOException
+    {
+        LogAnalyzer analyzer = new LogAnalyzer(log.getPath());
+        analyzer.analyzeStatusCodes(YEAR);
+        analyzer.addBatch(log.getPath(), YEAR);
+
+        assertEquals(10, analyzer.numberOfAccessess());
+        assertEquals(3, analyzer.busiestDay());
+        assertEquals(10, analyzer.statusCount(YEAR, 1, 200));
+    }
+
+    /**
+     * A follower reading from the start of the log supplies all of
+     * its data, so the log must not also be counted by the analyzer.
+     */
+    @Test
+    public void followerFromStartIsNotCountedTwice() throws IOException
+    {
+        LogAnalyzer analyzer = new LogAnalyzer(log.getPath());
+        LogFollower follower = new LogFollower(log, analyzer);
+        follower.poll();
+
+        assertEquals(5, analyzer.numberOfAccessess());
+        assertEquals(3, analyzer.busiestDay());
+    }
+
+    /**
+     * The counts returned are a copy, which does not change
+     * as further counts are added.
+     */
+    @Test
+    public void getCountsReturnsACopy()
+    {
+        LogAnalyzer analyzer = new LogAnalyzer(log.getPath());
+        analyzer.analyzeAll(YEAR);
+        LogCounts counts = analyzer.getCounts();
+        analyzer.addCounts(countsForDay(20, 7));
+
+        assertEquals(5, counts.numberOfAccesses());
+        assertEquals(12, analyzer.numberOfAccessess());
+    }
+
+    /**
+     * Make counts of accesses on one day of January.
+     * @param day The day.
+     * @param accesses How many accesses.
+     * @return The counts.
+     */
+    private static LogCounts countsForDay(int day, int accesses)
+    {
+        LogCounts counts = new LogCounts(YEAR);
+        for(int i = 0; i < accesses; i++) {
+            counts.record(YEAR, 1, day, 12, 200);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,682 @@
+import java.util.Arrays;
+
+/**
+ * The access counts built up by analyzing a log file:
+ * by hour, by day, by month, by month of each year, and
+ * a histogram of every status code from 100 to 599 for each
+ * month of each year. The number of accesses in each class of
+ * status code (1xx to 5xx) is kept alongside the histogram, so
+ * totals and error rates can be read without adding it up.
+ * 
+ * The counts by year cover only the years seen so far, and
+ * grow in either direction when an access from another year
+ * is counted, so a log may span any range of years.
+ * 
+ * Counts from separate parts of a log can be combined with
+ * merge, which adds them element by element, so each part
+ * can be counted independently.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogCounts
+{
+    // The range of status codes held in the histogram.
+    private static final int FIRST_CODE = 100, LAST_CODE = 599;
+    
+    // Where to calculate the hourly access counts.
+    private int[] hourCounts;
+    //Where to calculate the daily access counts.
+    private int[] dayCounts;
+    //Where to calculate the monthly access counts.
+    private int[] monthCounts;
+    //The first year held in yearMonth.
+    private int firstYear;
+    //Where to calculate monthly access by year.
+    private int[][] yearMonth;
+    //Where to calculate status codes for each month of each year:
+    //[(year - firstYear) * 12 + month - 1][code - FIRST_CODE].
+    //A month's row is only created once it has an access.
+    private int[][] statusCounts;
+    //Accesses by class of status code for each month of each year:
+    //[][0] is every access, [][1] to [][5] are 1xx to 5xx.
+    private int[][] classCounts;
+    //The year whose status codes are reported.
+    private int statusYear;
+
+    /**
+     * Create a set of empty counts.
+     * @param statusYear The year whose status codes are to be reported.
+     */
+    public LogCounts(int statusYear)
+    {
+        hourCounts = new int[24];
+        dayCounts = new int[32];
+        monthCounts = new int[13];
+        yearMonth = new int[0][13];
+        statusCounts = new int[0][];
+        classCounts = new int[0][6];
+        this.statusYear = statusYear;
+    }
+    
+    /**
+     * Count an access in every one of the counts.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @param hour The hour (0-23)
+     * @param code HTTP response code
+     */
+    public void record(int year, int month, int day, int hour, int code)
+    {
+        record(year, month, day, hour, code, 1);
+    }
+    
+    /**
+     * Count a number of accesses with the same details
+     * in every one of the counts.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @param hour The hour (0-23)
+     * @param code HTTP response code
+     * @param count The number of accesses.
+     */
+    public void record(int year, int month, int day, int hour, int code, int count)
+    {
+        hourCounts[hour] += count;
+        dayCounts[day] += count;
+        monthCounts[month] += count;
+        int index = yearIndex(year);
+        yearMonth[index][month] += count;
+        addStatusCodes(year, month, code, count);
+    }
+    
+    /**
+     * Count an access in a given hour.
+     * @param hour The hour (0-23)
+     */
+    public void recordHour(int hour)
+    {
+        hourCounts[hour]++;
+    }
+    
+    /**
+     * Count a number of accesses in a given hour.
+     * @param hour The hour (0-23)
+     * @param count The number of accesses.
+     */
+    public void recordHour(int hour, int count)
+    {
+        hourCounts[hour] += count;
+    }
+    
+    /**
+     * Count an access on a given day.
+     * @param day The day (1-31)
+     */
+    public void recordDay(int day)
+    {
+        dayCounts[day]++;
+    }
+    
+    /**
+     * Count a number of accesses on a given day.
+     * @param day The day (1-31)
+     * @param count The number of accesses.
+     */
+    public void recordDay(int day, int count)
+    {
+        dayCounts[day] += count;
+    }
+    
+    /**
+     * Count an access in a given month.
+     * @param month The month (1-12)
+     */
+    public void recordMonth(int month)
+    {
+        monthCounts[month]++;
+    }
+    
+    /**
+     * Count a number of accesses in a given month.
+     * @param month The month (1-12)
+     * @param count The number of accesses.
+     */
+    public void recordMonth(int month, int count)
+    {
+        monthCounts[month] += count;
+    }
+    
+    /**
+     * Count an access in a given month of a given year.
+     * @param year The year
+     * @param month The month (1-12)
+     */
+    public void recordYearMonth(int year, int month)
+    {
+        int index = yearIndex(year);
+        yearMonth[index][month]++;
+    }
+    
+    /**
+     * Count a number of accesses in a given month of a given year.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param count The number of accesses.
+     */
+    public void recordYearMonth(int year, int month, int count)
+    {
+        int index = yearIndex(year);
+        yearMonth[index][month] += count;
+    }
+    
+    /**
+     * Count a status code.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param code HTTP response code
+     */
+    public void recordStatusCode(int year, int month, int code)
+    {
+        addStatusCodes(year, month, code, 1);
+    }
+    
+    /**
+     * Count a number of accesses with a status code.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param code HTTP response code
+     * @param count The number of accesses.
+     */
+    public void recordStatusCode(int year, int month, int code, int count)
+    {
+        addStatusCodes(year, month, code, count);
+    }
+    
+    /**
+     * Count a number of accesses with a status code.
+     * Codes outside the range 100-599 are only counted
+     * in the total for the month.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param code HTTP response code
+     * @param count The number of accesses.
+     */
+    private void addStatusCodes(int year, int month, int code, int count)
+    {
+        int row = yearIndex(year) * 12 + month - 1;
+        classCounts[row][0] += count;
+        if(code >= FIRST_CODE && code <= LAST_CODE) {
+            if(statusCounts[row] == null) {
+                statusCounts[row] = new int[LAST_CODE - FIRST_CODE + 1];
+            }
+            statusCounts[row][code - FIRST_CODE] += count;
+            classCounts[row][code / 100] += count;
+        }
+    }
+    
+    /**
+     * Set every count back to zero.
+     */
+    public void clear()
+    {
+        clearHourCounts();
+        clearDayCounts();
+        clearMonthCounts();
+        yearMonth = new int[0][13];
+        statusCounts = new int[0][];
+        classCounts = new int[0][6];
+        firstYear = 0;
+    }
+
+    /**
+     * Set the hourly counts back to zero.
+     */
+    public void clearHourCounts()
+    {
+        Arrays.fill(hourCounts, 0);
+    }
+
+    /**
+     * Set the daily counts back to zero.
+     */
+    public void clearDayCounts()
+    {
+        Arrays.fill(dayCounts, 0);
+    }
+
+    /**
+     * Set the monthly counts back to zero.
+     */
+    public void clearMonthCounts()
+    {
+        Arrays.fill(monthCounts, 0);
+    }
+
+    /**
+     * Set the counts by month of each year back to zero.
+     */
+    public void clearYearMonth()
+    {
+        for(int[] months : yearMonth) {
+            Arrays.fill(months, 0);
+        }
+    }
+
+    /**
+     * Set the status code counts back to zero.
+     */
+    public void clearStatusCodes()
+    {
+        Arrays.fill(statusCounts, null);
+        for(int[] classes : classCounts) {
+            Arrays.fill(classes, 0);
+        }
+    }
+
+    /**
+     * Add another set of counts to these, element by element.
+     * @param other The counts to be added.
+     */
+    public void merge(LogCounts other)
+    {
+        add(hourCounts, other.hourCounts);
+        add(dayCounts, other.dayCounts);
+        add(monthCounts, other.monthCounts);
+        if(other.yearMonth.length == 0) {
+            return;
+        }
+        // Cover the other's years, then add them at their place in ours.
+        yearIndex(other.firstYear);
+        yearIndex(other.firstYear + other.yearMonth.length - 1);
+        int offset = other.firstYear - firstYear;
+        for(int year = 0; year < other.yearMonth.length; year++) {
+            add(yearMonth[offset + year], other.yearMonth[year]);
+        }
+        for(int row = 0; row < other.statusCounts.length; row++) {
+            int to = offset * 12 + row;
+            if(other.statusCounts[row] != null) {
+                if(statusCounts[to] == null) {
+                    statusCounts[to] = new int[LAST_CODE - FIRST_CODE + 1];
+                }
+                add(statusCounts[to], other.statusCounts[row]);
+            }
+            add(classCounts[to], other.classCounts[row]);
+        }
+    }
+    
+    /**
+     * @return The year whose status codes are reported.
+     */
+    public int getStatusYear()
+    {
+        return statusYear;
+    }
+    
+    /**
+     * Set the year whose status codes are to be reported.
+     * @param statusYear The year.
+     */
+    public void setStatusYear(int statusYear)
+    {
+        this.statusYear = statusYear;
+    }
+    
+    /**
+     * @return The hourly counts, indexed by hour.
+     */
+    public int[] getHourCounts()
+    {
+        return hourCounts;
+    }
+    
+    /**
+     * @return The daily counts, indexed by day (1-31).
+     */
+    public int[] getDayCounts()
+    {
+        return dayCounts;
+    }
+    
+    /**
+     * @return The monthly counts, indexed by month (1-12).
+     */
+    public int[] getMonthCounts()
+    {
+        return monthCounts;
+    }
+    
+    /**
+     * @return The monthly counts for each year,
+     *         indexed by year from getFirstYear() and month (1-12).
+     */
+    public int[][] getYearMonth()
+    {
+        return yearMonth;
+    }
+    
+    /**
+     * @return The first year of the yearMonth counts,
+     *         or 0 if no year has been counted.
+     */
+    public int getFirstYear()
+    {
+        return firstYear;
+    }
+    
+    /**
+     * @return The number of years in which there was an access,
+     *         not counting any gaps between them.
+     */
+    public int getYearsWithAccesses()
+    {
+        int years = 0;
+        for(int[] months : yearMonth) {
+            for(int count : months) {
+                if(count > 0) {
+                    years++;
+                    break;
+                }
+            }
+        }
+        return years;
+    }
+    
+    /**
+     * Return the number of accesses with a status code.
+     * @param year The year
+     * @param month The month (1-12), or 0 for the whole year.
+     * @param code HTTP response code (100-599)
+     * @return The number of accesses.
+     */
+    public int getStatusCount(int year, int month, int code)
+    {
+        if(code < FIRST_CODE || code > LAST_CODE || !hasStatusYear(year)) {
+            return 0;
+        }
+        int total = 0;
+        int first = firstRow(year, month);
+        for(int row = first; row <= lastRow(first, month); row++) {
+            if(statusCounts[row] != null) {
+                total += statusCounts[row][code - FIRST_CODE];
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Return the number of accesses with a class of status code,
+     * such as 5 for all of the 5xx codes.
+     * @param year The year
+     * @param month The month (1-12), or 0 for the whole year.
+     * @param codeClass The class (1-5), or 0 for every access.
+     * @return The number of accesses.
+     */
+    public int getClassCount(int year, int month, int codeClass)
+    {
+        if(!hasStatusYear(year)) {
+            return 0;
+        }
+        int total = 0;
+        int first = firstRow(year, month);
+        for(int row = first; row <= lastRow(first, month); row++) {
+            total += classCounts[row][codeClass];
+        }
+        return total;
+    }
+    
+    /**
+     * Return the fraction of accesses that had an error
+     * status code, that is a 4xx or 5xx code.
+     * @param year The year
+     * @param month The month (1-12), or 0 for the whole year.
+     * @return The error rate, or 0 if there were no accesses.
+     */
+    public double getErrorRate(int year, int month)
+    {
+        int total = getClassCount(year, month, 0);
+        if(total == 0) {
+            return 0;
+        }
+        return (double) (getClassCount(year, month, 4) + getClassCount(year, month, 5)) / total;
+    }
+    
+    /**
+     * Return the number of accesses counted.
+     */
+    public int numberOfAccesses()
+    {
+        int total = 0;
+        for(int i = 0;i < hourCounts.length;i++) {
+            total += hourCounts[i];
+        }
+        return total;
+    }
+    
+    /**
+     * Returns the most active hour.
+     * If there is more than one hour with the same amount it will return the first found
+     */
+    public int busiestHour()
+    {
+        int biggest = 0;
+        int busiest = 0;
+        for(int hour = 0;hour < hourCounts.length;hour++) {
+            if(hourCounts[hour] > biggest) {
+                biggest = hourCounts[hour];
+                busiest = hour;
+            }            
+        }
+        return busiest;
+    }
+    
+    /**
+     * Return the least active hour.
+     * Will return the first found if multiple hours are the lowest
+     */
+    public int quietestHour()
+    {
+        int leastVisits = hourCounts[0];
+        int quietest = 0;
+        for(int i = 1;i < hourCounts.length;i++) {
+            if(hourCounts[i] < leastVisits) {
+                leastVisits = hourCounts[i];
+                quietest = i;
+            }
+        }
+        return quietest;
+    }
+    
+    /**
+     * Returns the busiest 2 hour period.
+     */
+    public int busiestTwoHour()
+    {
+        int busiest = 0;
+        int biggest = 0;
+        for(int i = 0;i < hourCounts.length;i++) {
+            if(i == hourCounts.length - 1) {
+                if(hourCounts[i] + hourCounts[0] > biggest) {
+                    biggest = hourCounts[i] + hourCounts[0];
+                    busiest = i;
+                }
+            }                    
+            else if(hourCounts[i] + hourCounts[i + 1] > biggest) {
+                    biggest = hourCounts[i] + hourCounts[i + 1];
+                    busiest = i;
+            }
+        }
+        return busiest;
+    }
+    
+    /**
+     * Returns the quietest day.
+     * If there are more than one day with same value, returns first found.
+     */
+    public int quietestDay()
+    {
+        int leastVisits = dayCounts[1];
+        int quietest = 0;
+        for(int day = 1;day < dayCounts.length;day++) {
+            if(dayCounts[day] < leastVisits) {
+                leastVisits = dayCounts[day];
+                quietest = day;
+            }
+        }
+        return quietest;
+    }
+    
+    /**
+     * Returns the busiest day.
+     * If there are more than one day with same value, returns first found.
+     */
+    public int busiestDay()
+    {
+        int mostVisits = 0;
+        int busiest = 0;
+        for(int day = 1;day < dayCounts.length;day++) {
+            if(dayCounts[day] > mostVisits) {
+                mostVisits = dayCounts[day];
+                busiest = day;
+            }
+        }
+        return busiest;
+    }
+    
+    /**
+     * Returns the quietest month.
+     * If there is more than one month with same value, returns first found.
+     */
+    public int quietestMonth()
+    {
+        int leastVisits = monthCounts[1];
+        int quietest = 0;
+        for(int month = 1;month < monthCounts.length;month++) {
+            if(monthCounts[month] < leastVisits) {
+                leastVisits = monthCounts[month];
+                quietest = month;
+            }
+        }
+        return quietest;
+    }
+    
+    /**
+     * Returns the busiest month.
+     * If there is more than one month with same value, returns first found.
+     */
+    public int busiestMonth()
+    {
+        int mostVisits = 0;
+        int busiest = 0;
+        for(int month = 1;month < monthCounts.length;month++) {
+            if(monthCounts[month] > mostVisits) {
+                mostVisits = monthCounts[month];
+                busiest = month;
+            }
+        }
+        return busiest;
+    }
+    
+    /**
+     * Add one array of counts to another, element by element.
+     * @param total The counts to be added to.
+     * @param part The counts to add.
+     */
+    private static void add(int[] total, int[] part)
+    {
+        for(int i = 0; i < total.length; i++) {
+            total[i] += part[i];
+        }
+    }
+    
+    /**
+     * Return the index of a year in yearMonth, first growing
+     * the counts by year to cover it if necessary.
+     * @param year The year
+     * @return The index.
+     */
+    private int yearIndex(int year)
+    {
+        int index = year - firstYear;
+        if(index >= 0 && index < yearMonth.length) {
+            return index;
+        }
+        if(yearMonth.length == 0) {
+            resize(year, 1);
+        }
+        else if(index < 0) {
+            resize(year, yearMonth.length - index);
+        }
+        else {
+            resize(firstYear, index + 1);
+        }
+        return year - firstYear;
+    }
+    
+    /**
+     * Move the counts by year into arrays covering a new range of years,
+     * which includes the old range.
+     * @param newFirstYear The first year of the new range.
+     * @param years The number of years in the new range.
+     */
+    private void resize(int newFirstYear, int years)
+    {
+        int offset = yearMonth.length == 0 ? 0 : firstYear - newFirstYear;
+        int[][] newYearMonth = new int[years][];
+        int[][] newStatusCounts = new int[years * 12][];
+        int[][] newClassCounts = new int[years * 12][];
+        System.arraycopy(yearMonth, 0, newYearMonth, offset, yearMonth.length);
+        System.arraycopy(statusCounts, 0, newStatusCounts, offset * 12, statusCounts.length);
+        System.arraycopy(classCounts, 0, newClassCounts, offset * 12, classCounts.length);
+        for(int year = 0; year < years; year++) {
+            if(newYearMonth[year] == null) {
+                newYearMonth[year] = new int[13];
+            }
+        }
+        for(int row = 0; row < newClassCounts.length; row++) {
+            if(newClassCounts[row] == null) {
+                newClassCounts[row] = new int[6];
+            }
+        }
+        firstYear = newFirstYear;
+        yearMonth = newYearMonth;
+        statusCounts = newStatusCounts;
+        classCounts = newClassCounts;
+    }
+    
+    /**
+     * Is a year within the range of the status code counts?
+     * @param year The year
+     * @return true if it is.
+     */
+    private boolean hasStatusYear(int year)
+    {
+        return year >= firstYear && year < firstYear + yearMonth.length;
+    }
+    
+    /**
+     * Return the first row of the status code counts for a month,
+     * or for the whole of a year.
+     * @param year The year
+     * @param month The month (1-12), or 0 for the whole year.
+     * @return The row.
+     */
+    private int firstRow(int year, int month)
+    {
+        return (year - firstYear) * 12 + Math.max(month, 1) - 1;
+    }
+    
+    /**
+     * Return the last row of the status code counts for a month,
+     * or for the whole of a year.
+     * @param firstRow The first row, from firstRow.
+     * @param month The month (1-12), or 0 for the whole year.
+     * @return The row.
+     */
+    private int lastRow(int firstRow, int month)
+    {
+        return month == 0 ? firstRow + 11 : firstRow;
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.Calendar;
-
 /**
  * Store the data from a single line of a
  * web-server log file.
@@ -17,17 +15,23 @@ public class LogEntry implements Comparable<LogEntry>
     // Where the data values extracted from a single
     // log line are stored.
     private int[] dataValues;
-    // The equivalent Calendar object for the log time.
-    private Calendar when;
+    // The log time packed into a single key, see timeKey.
+    private long when;
     
     // At which index in dataValues the different fields
     // from a log line are stored.
     private static final int YEAR = 0, MONTH = 1, DAY = 2,
                              HOUR = 3, MINUTE = 4, CODE = 5; 
+    // The positions of the fields within a time key.
+    static final int YEAR_SHIFT = 20, MONTH_SHIFT = 16,
+                             DAY_SHIFT = 11, HOUR_SHIFT = 6;
     // The number of fields. If more fields are added, e.g. for
     // seconds or a status code, then this value must be increased
     // to match.
     private static final int NUMBER_OF_FIELDS = 6;
+    // Used to break up log lines. It holds no state
+    // between lines, so it can be shared by all entries.
+    private static final LoglineTokenizer TOKENIZER = new LoglineTokenizer();
                       
     /**
      * Decompose a log line so that the individual fields
@@ -41,8 +45,7 @@ public class LogEntry implements Comparable<LogEntry>
         // The array to store the data for a single line.
         dataValues = new int[NUMBER_OF_FIELDS];
         // Break up the log line.
-        LoglineTokenizer tokenizer = new LoglineTokenizer();
-        tokenizer.tokenize(logline,dataValues);
+        TOKENIZER.tokenize(logline,dataValues);
         setWhen();
     }
     
@@ -68,6 +71,27 @@ public class LogEntry implements Comparable<LogEntry>
         setWhen();
     }
     
+    /**
+     * Create an empty LogEntry to be used as a view of
+     * records held elsewhere, such as in a LogStore.
+     * Its fields are filled in with set.
+     */
+    LogEntry()
+    {
+        dataValues = new int[NUMBER_OF_FIELDS];
+    }
+    
+    /**
+     * Replace all of the fields of this entry.
+     * This allows one entry to act as a view of many records.
+     * @param fields The year, month, day, hour, minute and code.
+     */
+    void set(int[] fields)
+    {
+        System.arraycopy(fields, 0, dataValues, 0, NUMBER_OF_FIELDS);
+        setWhen();
+    }
+    
     /**
      * Return the hour.
      * @return The hour field from the log line.
@@ -153,29 +177,139 @@ public class LogEntry implements Comparable<LogEntry>
      */
     public int compareTo(LogEntry otherEntry)
     {
-        // Use the equivalent Calendars comparison method.
-        return when.compareTo(otherEntry.getWhen());
+        // The time keys are in the same order as the times.
+        return Long.compare(when, otherEntry.getWhen());
     }
     
     /**
-     * Return the Calendar object representing this event.
-     * @return The Calendar for this event.
+     * Return the time key representing this event.
+     * @return The time key for this event.
      */
-    private Calendar getWhen()
+    public long getWhen()
     {
         return when;
     }
+    
+    /**
+     * Pack a date and time into a single key. The fields are
+     * held in separate groups of bits, with the year highest,
+     * so keys are in the same order as the times they represent.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @param hour The hour (0-23)
+     * @param minute The minute (0-59)
+     * @return The time key.
+     * @throws IllegalArgumentException if the year is negative or
+     *         a field is too large for its group of bits, either of
+     *         which would put keys out of order.
+     */
+    public static long timeKey(int year, int month, int day, int hour, int minute)
+    {
+        if(year < 0 || (month & ~0xf | day & ~0x1f | hour & ~0x1f | minute & ~0x3f) != 0) {
+            throw new IllegalArgumentException("Date or time out of range: " + year + " " + month
+                                               + " " + day + " " + hour + " " + minute);
+        }
+        return (long) year << YEAR_SHIFT | month << MONTH_SHIFT | day << DAY_SHIFT
+               | hour << HOUR_SHIFT | minute;
+    }
 
     /**
-     * Create an equivalent Calendar object from the data values.
+     * Return the year of a time key.
+     * @param timeKey The time key.
+     * @return The year.
      */
-    private void setWhen()
+    public static int yearOf(long timeKey)
+    {
+        return (int) (timeKey >>> YEAR_SHIFT);
+    }
+
+    /**
+     * Return the month of a time key.
+     * @param timeKey The time key.
+     * @return The month (1-12)
+     */
+    public static int monthOf(long timeKey)
     {
-        when = Calendar.getInstance();
-        // Adjust from 1-based month and day to 0-based.
-        when.set(dataValues[YEAR],
-                 dataValues[MONTH] - 1, dataValues[DAY] - 1,
-                 dataValues[HOUR], dataValues[MINUTE]);
+        return (int) (timeKey >>> MONTH_SHIFT) & 0xf;
+    }
+
+    /**
+     * Return the day of a time key.
+     * @param timeKey The time key.
+     * @return The day (1-31)
+     */
+    public static int dayOf(long timeKey)
+    {
+        return (int) (timeKey >>> DAY_SHIFT) & 0x1f;
+    }
+
+    /**
+     * Return the hour of a time key.
+     * @param timeKey The time key.
+     * @return The hour (0-23)
+     */
+    public static int hourOf(long timeKey)
+    {
+        return (int) (timeKey >>> HOUR_SHIFT) & 0x1f;
+    }
+
+    /**
+     * Return the minute of a time key.
+     * @param timeKey The time key.
+     * @return The minute (0-59)
+     */
+    public static int minuteOf(long timeKey)
+    {
+        return (int) timeKey & 0x3f;
     }
     
+    /**
+     * Return the number of days from 1970-01-01 to a date, in the
+     * proleptic Gregorian calendar. Days beyond the end of a month
+     * carry over into the next month.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @return The number of days, negative for earlier dates.
+     */
+    public static long epochDay(int year, int month, int day)
+    {
+        // Count years from March, so that leap days come last.
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+    
+    /**
+     * Find the date that is a number of days from 1970-01-01.
+     * This is the reverse of epochDay.
+     * @param epochDay The number of days.
+     * @param date Where to store the year, month and day.
+     */
+    public static void epochDate(long epochDay, int[] date)
+    {
+        long shifted = epochDay + 719468;
+        long era = Math.floorDiv(shifted, 146097);
+        long dayOfEra = shifted - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthFromMarch = (5 * dayOfYear + 2) / 153;
+        int month = (int) (monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9);
+        date[0] = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        date[1] = month;
+        date[2] = (int) (dayOfYear - (153 * monthFromMarch + 2) / 5 + 1);
+    }
+
+    /**
+     * Calculate the time key from the data values.
+     */
+    private void setWhen()
+    {
+        when = timeKey(dataValues[YEAR], dataValues[MONTH], dataValues[DAY],
+                       dataValues[HOUR], dataValues[MINUTE]);
+    }
 }
\ No newline at end of file
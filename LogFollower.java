@@ -0,0 +1,270 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Follow a log file that is being appended to, adding the
+ * accesses in each newly written line to a LogAnalyzer.
+ * The follower remembers how far into the file it has read,
+ * so each poll only reads the bytes written since the last one.
+ * A line is only read once its terminating newline has been written.
+ * A line too long to fit in the buffer is reported and skipped.
+ * 
+ * Polling can be done by hand, or by a background thread
+ * started with start. The analyzer's queries can be used
+ * while polling continues. If polls fail, the background thread
+ * waits longer between them, and gives up after several failures
+ * in a row.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogFollower
+{
+    // The size of the buffer used to read new data.
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    // How many polls in a row may fail before the background thread stops.
+    private static final int MAX_FAILURES = 10;
+    // The longest the background thread waits after a failure.
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    
+    // The file being followed.
+    private File file;
+    // The analyzer to be updated.
+    private LogAnalyzer analyzer;
+    // How far into the file has been read.
+    private long offset;
+    // Where lines that cannot be counted are reported.
+    private ParseErrorHandler errorHandler;
+    // Used to read the values from each line.
+    private LoglineParser parser;
+    // Holds the bytes read from the file.
+    private ByteBuffer buffer;
+    // Whether the rest of a line too long for the buffer is being skipped.
+    private boolean skipping;
+    // The background polling thread, or null if there is none.
+    private Thread thread;
+    // Whether the background thread should keep polling.
+    private volatile boolean running;
+
+    /**
+     * Create a follower that starts from the beginning of a file.
+     * The follower supplies all of the file's data, so the
+     * analyzer's counts should not already hold any of it.
+     * @param file The log file.
+     * @param analyzer The analyzer to be updated.
+     */
+    public LogFollower(File file, LogAnalyzer analyzer)
+    {
+        this(file, analyzer, 0);
+    }
+    
+    /**
+     * Create a follower that starts part way into a file, such as
+     * where a previous follower stopped. The analyzer's counts
+     * should already hold the data before that point.
+     * @param file The log file.
+     * @param analyzer The analyzer to be updated.
+     * @param offset The position of the start of the first line to read.
+     */
+    public LogFollower(File file, LogAnalyzer analyzer, long offset)
+    {
+        if(offset == 0) {
+            analyzer.followedFromStart();
+        }
+        this.file = file;
+        this.analyzer = analyzer;
+        this.offset = offset;
+        errorHandler = (logline, problem) ->
+            System.err.println(problem + " on log line: " + logline);
+        parser = new LoglineParser(errorHandler);
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * Read any lines written since the last poll and add them
+     * to the analyzer's counts. If the file has become shorter,
+     * it is assumed to have been replaced and is read again
+     * from the beginning. A line longer than the buffer, or with
+     * a date or time out of range, is reported and skipped.
+     * @return The number of entries added.
+     */
+    public synchronized int poll() throws IOException
+    {
+        LogCounts added = new LogCounts(analyzer.getStatusYear());
+        int[] fields = new int[6];
+        int entries = 0;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size < offset) {
+                System.err.println(file + " has been truncated; reading from the start.");
+                offset = 0;
+                skipping = false;
+            }
+            while(offset < size) {
+                buffer.clear();
+                int read = channel.read(buffer, offset);
+                if(read <= 0) {
+                    break;
+                }
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for(int i = 0; i < read; i++) {
+                    if(bytes[i] == '\n') {
+                        if(skipping) {
+                            // This is the end of a line too long to parse.
+                            skipping = false;
+                        }
+                        else if(i > lineStart && parser.parse(bytes, lineStart, i, fields)) {
+                            if(inRange(fields)) {
+                                added.record(fields[0], fields[1], fields[2], fields[3], fields[5]);
+                                entries++;
+                            }
+                            else {
+                                errorHandler.malformedLine(new String(bytes, lineStart, i - lineStart,
+                                                                      StandardCharsets.ISO_8859_1),
+                                                           "Date or time out of range");
+                            }
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if(lineStart == 0) {
+                    if(read == buffer.capacity() && !skipping) {
+                        System.err.println("Skipping line longer than " + BUFFER_SIZE
+                                           + " bytes at position " + offset + " of " + file);
+                        skipping = true;
+                    }
+                    if(!skipping) {
+                        // Only part of a line has been written so far.
+                        break;
+                    }
+                    // None of a line being skipped needs to be read again.
+                    lineStart = read;
+                }
+                offset += lineStart;
+            }
+        }
+        analyzer.addCounts(added);
+        return entries;
+    }
+    
+    /**
+     * Start polling the file in a background thread. After a failed
+     * poll the wait is doubled, up to a minute, and the thread stops
+     * after MAX_FAILURES failures in a row. isRunning shows whether
+     * the thread is still polling.
+     * @param intervalMillis How long to wait between polls.
+     */
+    public synchronized void start(long intervalMillis)
+    {
+        if(thread != null && thread.isAlive()) {
+            return;
+        }
+        running = true;
+        thread = new Thread(() -> {
+            try {
+                int failures = 0;
+                while(running) {
+                    try {
+                        poll();
+                        failures = 0;
+                    }
+                    catch(IOException | RuntimeException e) {
+                        // Reading is interrupted when the follower is stopped.
+                        if(!running) {
+                            break;
+                        }
+                        failures++;
+                        System.err.println("Problem following " + file + ": " + e);
+                        if(failures >= MAX_FAILURES) {
+                            System.err.println("Stopped following " + file + " after "
+                                               + failures + " failures in a row.");
+                            break;
+                        }
+                    }
+                    try {
+                        Thread.sleep(backOff(intervalMillis, failures));
+                    }
+                    catch(InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+            finally {
+                running = false;
+            }
+        }, "LogFollower " + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stop the background polling thread, if there is one.
+     */
+    public void stop()
+    {
+        Thread polling;
+        synchronized(this) {
+            polling = thread;
+            thread = null;
+            running = false;
+        }
+        if(polling != null) {
+            polling.interrupt();
+            try {
+                polling.join();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * @return Whether the background thread is polling the file.
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+    
+    /**
+     * Are the fields of a line within the ranges that can be counted?
+     * @param fields The year, month, day, hour, minute and code.
+     * @return true if the month, day, hour and minute are in range.
+     */
+    private static boolean inRange(int[] fields)
+    {
+        return fields[1] >= 1 && fields[1] <= 12 && fields[2] >= 1 && fields[2] <= 31
+               && fields[3] <= 23 && fields[4] <= 59;
+    }
+    
+    /**
+     * Return how long to wait before the next poll: the interval,
+     * doubled for each failure in a row, up to MAX_BACKOFF_MILLIS
+     * unless the interval itself is longer.
+     * @param intervalMillis The interval between successful polls.
+     * @param failures How many polls in a row have failed.
+     * @return The time to wait in milliseconds.
+     */
+    private static long backOff(long intervalMillis, int failures)
+    {
+        if(failures == 0) {
+            return intervalMillis;
+        }
+        long wait = intervalMillis << Math.min(failures, 16);
+        return Math.max(intervalMillis, Math.min(wait, MAX_BACKOFF_MILLIS));
+    }
+    
+    /**
+     * @return The position in the file up to which lines have been read.
+     */
+    public synchronized long getOffset()
+    {
+        return offset;
+    }
+}
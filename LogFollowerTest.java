@@ -0,0 +1,94 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check that a LogFollower skips lines it cannot count
+ * and keeps following the file.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogFollowerTest
+{
+    // The file being followed.
+    private File log;
+
+    /**
+     * Create an empty log.
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        log = File.createTempFile("follower", ".log");
+    }
+
+    /**
+     * Remove the log.
+     */
+    @After
+    public void tearDown()
+    {
+        log.delete();
+    }
+
+    /**
+     * A line with an hour out of range is skipped,
+     * and the lines after it are counted.
+     */
+    @Test
+    public void outOfRangeLineIsSkipped() throws IOException
+    {
+        append("2015 01 01 10 00 200\n2015 01 01 30 00 200\n2015 01 02 11 00 404\n");
+        LogAnalyzer analyzer = new LogAnalyzer(log.getPath());
+        LogFollower follower = new LogFollower(log, analyzer);
+
+        assertEquals(2, follower.poll());
+        assertEquals(log.length(), follower.getOffset());
+        assertEquals(2, analyzer.numberOfAccessess());
+    }
+
+    /**
+     * The background thread keeps counting after a line
+     * out of range, and stops when asked.
+     */
+    @Test
+    public void backgroundThreadSurvivesOutOfRangeLine()
+        throws IOException, InterruptedException
+    {
+        LogAnalyzer analyzer = new LogAnalyzer(log.getPath());
+        LogFollower follower = new LogFollower(log, analyzer);
+        follower.start(10);
+        append("2015 01 01 10 00 200\n2015 13 01 10 00 200\n");
+        append("2015 01 02 11 00 200\n");
+        long deadline = System.currentTimeMillis() + 5000;
+        while(follower.getOffset() < log.length() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(follower.isRunning());
+        follower.stop();
+        assertFalse(follower.isRunning());
+
+        assertEquals(log.length(), follower.getOffset());
+        assertEquals(2, analyzer.numberOfAccessess());
+    }
+
+    /**
+     * Add text to the end of the log.
+     * @param text The text.
+     */
+    private void append(String text) throws IOException
+    {
+        try(FileWriter out = new FileWriter(log, true)) {
+            out.write(text);
+        }
+    }
+}
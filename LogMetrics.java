@@ -0,0 +1,304 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers for reading and analyzing logs: lines and
+ * bytes read, lines that could not be parsed, time spent sorting,
+ * and the time and records of each kind of analysis. They show
+ * whether a slow run is limited by reading, parsing, sorting or
+ * analysis.
+ * 
+ * Metrics are only collected once enabled, with setEnabled or by
+ * running with -Dweblog.metrics=true. Until then each hook is a
+ * single test of a flag, and no clock is read. The metrics can
+ * be read through JMX once register has been called, or as
+ * JSON from toJson.
+ * 
+ * The readers, parsers, sorter and analyzers report to the single
+ * instance returned by getInstance.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogMetrics implements LogMetricsMBean
+{
+    // The name under which the metrics are registered with JMX.
+    public static final String OBJECT_NAME = "weblog:type=LogMetrics";
+    // Returned by start when metrics are not being collected.
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+    
+    private static final LogMetrics INSTANCE = new LogMetrics();
+    // Tested by every hook, so kept static.
+    private static volatile boolean enabled = Boolean.getBoolean("weblog.metrics");
+    
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final Timer sorts = new Timer();
+    // The timers for each kind of analysis, by name.
+    private final Map<String, Timer> analyses = new ConcurrentHashMap<>();
+
+    /**
+     * Create the metrics. There is only one set, from getInstance.
+     */
+    private LogMetrics()
+    {
+    }
+    
+    /**
+     * @return The metrics that every class reports to.
+     */
+    public static LogMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+    
+    /**
+     * Register the metrics with the platform MBean server,
+     * unless they already are.
+     */
+    public void register()
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        }
+        catch(JMException e) {
+            System.err.println("Problem registering " + OBJECT_NAME + ": " + e);
+        }
+    }
+    
+    /**
+     * Start timing something, if metrics are being collected.
+     * @return The time to pass to sorted or analyzed.
+     */
+    public static long start()
+    {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+    
+    /**
+     * Count lines that have been read.
+     * @param lines The number of lines.
+     * @param bytes The number of bytes in them.
+     */
+    public static void linesRead(long lines, long bytes)
+    {
+        if(enabled) {
+            INSTANCE.linesRead.add(lines);
+            INSTANCE.bytesRead.add(bytes);
+        }
+    }
+    
+    /**
+     * Count a line that could not be parsed.
+     */
+    public static void parseFailure()
+    {
+        if(enabled) {
+            INSTANCE.parseFailures.increment();
+        }
+    }
+    
+    /**
+     * Count a sort that has finished.
+     * @param start The time from start.
+     * @param records The number of records sorted.
+     */
+    public static void sorted(long start, long records)
+    {
+        if(start != NOT_TIMED) {
+            INSTANCE.sorts.add(System.nanoTime() - start, records);
+        }
+    }
+    
+    /**
+     * Count an analysis that has finished.
+     * @param analysis The kind of analysis, e.g. "analyzeAll".
+     * @param start The time from start.
+     * @param records The number of records analyzed.
+     */
+    public static void analyzed(String analysis, long start, long records)
+    {
+        if(start != NOT_TIMED) {
+            INSTANCE.analyses.computeIfAbsent(analysis, name -> new Timer())
+                             .add(System.nanoTime() - start, records);
+        }
+    }
+    
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+    
+    public void setEnabled(boolean enabled)
+    {
+        LogMetrics.enabled = enabled;
+    }
+    
+    public long getLinesRead()
+    {
+        return linesRead.sum();
+    }
+    
+    public long getBytesRead()
+    {
+        return bytesRead.sum();
+    }
+    
+    public long getParseFailures()
+    {
+        return parseFailures.sum();
+    }
+    
+    public long getSorts()
+    {
+        return sorts.runs.sum();
+    }
+    
+    public long getRecordsSorted()
+    {
+        return sorts.records.sum();
+    }
+    
+    public double getSortMillis()
+    {
+        return sorts.nanos.sum() / 1e6;
+    }
+    
+    public long getAnalyses()
+    {
+        long runs = 0;
+        for(Timer timer : analyses.values()) {
+            runs += timer.runs.sum();
+        }
+        return runs;
+    }
+    
+    public long getRecordsAnalyzed()
+    {
+        long records = 0;
+        for(Timer timer : analyses.values()) {
+            records += timer.records.sum();
+        }
+        return records;
+    }
+    
+    public double getAnalysisMillis()
+    {
+        long nanos = 0;
+        for(Timer timer : analyses.values()) {
+            nanos += timer.nanos.sum();
+        }
+        return nanos / 1e6;
+    }
+    
+    public double getRecordsPerSecond()
+    {
+        double millis = getAnalysisMillis();
+        return millis == 0 ? 0 : getRecordsAnalyzed() / millis * 1000;
+    }
+    
+    public String[] getAnalysisTimes()
+    {
+        List<String> times = new ArrayList<>();
+        for(Map.Entry<String, Timer> analysis : new TreeMap<>(analyses).entrySet()) {
+            Timer timer = analysis.getValue();
+            times.add(String.format("%s: %d runs, %.3f ms, %d records",
+                                    analysis.getKey(), timer.runs.sum(),
+                                    timer.nanos.sum() / 1e6, timer.records.sum()));
+        }
+        return times.toArray(new String[times.size()]);
+    }
+    
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"enabled\":").append(enabled)
+            .append(",\"linesRead\":").append(getLinesRead())
+            .append(",\"bytesRead\":").append(getBytesRead())
+            .append(",\"parseFailures\":").append(getParseFailures())
+            .append(",\"sort\":");
+        sorts.appendJson(json);
+        json.append(",\"analysis\":{");
+        String separator = "";
+        for(Map.Entry<String, Timer> analysis : new TreeMap<>(analyses).entrySet()) {
+            json.append(separator).append('"').append(analysis.getKey()).append("\":");
+            analysis.getValue().appendJson(json);
+            separator = ",";
+        }
+        json.append("},\"recordsAnalyzed\":").append(getRecordsAnalyzed())
+            .append(",\"analysisMillis\":").append(getAnalysisMillis())
+            .append(",\"recordsPerSecond\":").append(getRecordsPerSecond())
+            .append('}');
+        return json.toString();
+    }
+    
+    public void reset()
+    {
+        linesRead.reset();
+        bytesRead.reset();
+        parseFailures.reset();
+        sorts.reset();
+        analyses.clear();
+    }
+    
+    /**
+     * The number of runs, time taken and records handled
+     * by one kind of task.
+     */
+    private static class Timer
+    {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        
+        /**
+         * Count a run.
+         * @param elapsed How long it took, in nanoseconds.
+         * @param handled How many records it handled.
+         */
+        public void add(long elapsed, long handled)
+        {
+            runs.increment();
+            nanos.add(elapsed);
+            records.add(handled);
+        }
+        
+        /**
+         * Set the timer back to zero.
+         */
+        public void reset()
+        {
+            runs.reset();
+            nanos.reset();
+            records.reset();
+        }
+        
+        /**
+         * Add the timer to some JSON as an object.
+         * @param json Where to add it.
+         */
+        public void appendJson(StringBuilder json)
+        {
+            long time = nanos.sum();
+            json.append("{\"runs\":").append(runs.sum())
+                .append(",\"millis\":").append(time / 1e6)
+                .append(",\"records\":").append(records.sum())
+                .append(",\"recordsPerSecond\":")
+                .append(time == 0 ? 0 : records.sum() * 1e9 / time)
+                .append('}');
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * The management interface of LogMetrics, through which the
+ * counters and timers can be read, e.g. with jconsole, under
+ * the name "weblog:type=LogMetrics".
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public interface LogMetricsMBean
+{
+    /**
+     * @return true if metrics are being collected.
+     */
+    boolean isEnabled();
+    
+    /**
+     * Start or stop collecting metrics.
+     * @param enabled true to collect them.
+     */
+    void setEnabled(boolean enabled);
+    
+    /**
+     * @return The number of log lines read.
+     */
+    long getLinesRead();
+    
+    /**
+     * @return The number of bytes of log text read.
+     */
+    long getBytesRead();
+    
+    /**
+     * @return The number of lines that could not be parsed.
+     */
+    long getParseFailures();
+    
+    /**
+     * @return The number of sorts made.
+     */
+    long getSorts();
+    
+    /**
+     * @return The number of records sorted.
+     */
+    long getRecordsSorted();
+    
+    /**
+     * @return The total time spent sorting, in milliseconds.
+     */
+    double getSortMillis();
+    
+    /**
+     * @return The number of analyses made.
+     */
+    long getAnalyses();
+    
+    /**
+     * @return The number of records analyzed.
+     */
+    long getRecordsAnalyzed();
+    
+    /**
+     * @return The total time spent analyzing, in milliseconds.
+     */
+    double getAnalysisMillis();
+    
+    /**
+     * @return The records analyzed per second of analysis.
+     */
+    double getRecordsPerSecond();
+    
+    /**
+     * @return A line for each kind of analysis, giving its runs,
+     *         time and records.
+     */
+    String[] getAnalysisTimes();
+    
+    /**
+     * @return Every metric as a JSON object.
+     */
+    String toJson();
+    
+    /**
+     * Set every metric back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,592 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * Count the accesses in a log file in three stages that run at
+ * the same time, so that reading the disk and parsing overlap:
+ *
+ *    a reading thread reads the file in large blocks, each ending
+ *        at the end of a line;
+ *    parsing threads turn each block into a batch of records,
+ *        packed into longs as in LogStore;
+ *    the calling thread adds the records of each batch to the counts.
+ *
+ * The stages are joined by RingBuffers of a fixed size, so a stage
+ * that gets ahead is held back until the next one catches up. Used
+ * blocks and batches are passed back to be filled again rather than
+ * being left for the garbage collector.
+ *
+ * The time each stage spends working, waiting for its input and
+ * waiting for room for its output is kept, and can be printed with
+ * printStats. A stage that is mostly waiting for room is faster than
+ * the one after it; the slowest stage is the one that is busy while
+ * the others wait.
+ *
+ * The batches reach the last stage in no particular order, so the
+ * records are not passed on in the order of the file.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogPipeline
+{
+    // The default size of the blocks read from the file.
+    private static final int BLOCK_SIZE = 1 << 20;
+    // The default number of blocks or batches each queue can hold.
+    private static final int QUEUE_CAPACITY = 16;
+    // Passed down the pipeline after the last block, and by each
+    // parsing thread after its last batch.
+    private static final Block END_OF_BLOCKS = new Block(0);
+    private static final Batch END_OF_BATCHES = new Batch(0);
+
+    // The log file.
+    private File file;
+    // How many parsing threads to use.
+    private int parsers;
+    // The size of the blocks read.
+    private int blockSize;
+    // The number of items each queue can hold.
+    private int queueCapacity;
+    // The statistics of each stage for the last run.
+    private StageStats reading;
+    private StageStats parsing;
+    private StageStats aggregating;
+    // The first problem met by any stage of the current run.
+    private volatile Throwable failure;
+
+    /**
+     * Create a pipeline for a log file, with one parsing
+     * thread for each processor not used by the other stages.
+     * @param file The log file, which may be compressed.
+     */
+    public LogPipeline(File file)
+    {
+        this(file, Math.max(Runtime.getRuntime().availableProcessors() - 2, 1));
+    }
+
+    /**
+     * Create a pipeline for a log file.
+     * @param file The log file, which may be compressed.
+     * @param parsers How many parsing threads to use (at least 1).
+     */
+    public LogPipeline(File file, int parsers)
+    {
+        this(file, parsers, BLOCK_SIZE, QUEUE_CAPACITY);
+    }
+
+    /**
+     * Create a pipeline for a log file.
+     * @param file The log file, which may be compressed.
+     * @param parsers How many parsing threads to use (at least 1).
+     * @param blockSize The number of bytes to read at a time.
+     * @param queueCapacity How many blocks or batches may wait
+     *                      between one stage and the next.
+     */
+    public LogPipeline(File file, int parsers, int blockSize, int queueCapacity)
+    {
+        if(parsers < 1) {
+            throw new IllegalArgumentException("At least one parser is needed: " + parsers);
+        }
+        if(blockSize < 1) {
+            throw new IllegalArgumentException("Block size out of range: " + blockSize);
+        }
+        this.file = file;
+        this.parsers = parsers;
+        this.blockSize = blockSize;
+        this.queueCapacity = queueCapacity;
+        reading = new StageStats("read", 1);
+        parsing = new StageStats("parse", parsers);
+        aggregating = new StageStats("aggregate", 1);
+    }
+
+    /**
+     * Count every access in the file.
+     * @param year The year whose status codes are to be reported.
+     * @return The counts.
+     */
+    public LogCounts analyze(int year) throws IOException
+    {
+        LogCounts counts = new LogCounts(year);
+        int[] fields = new int[6];
+        run(record -> {
+            LogStore.unpack(record, fields);
+            counts.record(fields[0], fields[1], fields[2], fields[3], fields[5]);
+        });
+        return counts;
+    }
+
+    /**
+     * Pass every record in the file to a consumer, which is
+     * called only from the calling thread, but not in the
+     * order of the file.
+     * @param records Where to pass each record, packed as by LogStore.pack.
+     */
+    public void run(LongConsumer records) throws IOException
+    {
+        RingBuffer<Block> blocks = new RingBuffer<>(queueCapacity);
+        RingBuffer<Batch> batches = new RingBuffer<>(queueCapacity);
+        // Emptied blocks and batches, ready to be filled again.
+        RingBuffer<Block> freeBlocks = new RingBuffer<>(queueCapacity * 2);
+        RingBuffer<Batch> freeBatches = new RingBuffer<>(queueCapacity * 2);
+        reading = new StageStats("read", 1);
+        parsing = new StageStats("parse", parsers);
+        aggregating = new StageStats("aggregate", 1);
+        failure = null;
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> stage(() -> read(blocks, freeBlocks), blocks, batches),
+                               "log-pipeline-read"));
+        for(int i = 0; i < parsers; i++) {
+            threads.add(new Thread(() -> stage(() -> parse(blocks, batches, freeBlocks, freeBatches),
+                                               blocks, batches),
+                                   "log-pipeline-parse-" + i));
+        }
+        for(Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            stage(() -> aggregate(batches, freeBatches, records), blocks, batches);
+        }
+        finally {
+            try {
+                for(Thread thread : threads) {
+                    thread.join();
+                }
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                blocks.close();
+                batches.close();
+                throw new IOException("Interrupted while analyzing " + file, e);
+            }
+        }
+        Throwable problem = failure;
+        if(problem instanceof IOException) {
+            throw (IOException) problem;
+        }
+        else if(problem instanceof RuntimeException) {
+            throw (RuntimeException) problem;
+        }
+        else if(problem instanceof Error) {
+            throw (Error) problem;
+        }
+    }
+
+    /**
+     * Print the statistics of each stage of the last run.
+     */
+    public void printStats()
+    {
+        System.out.printf("%-10s%8s%10s%12s%12s%12s%14s%n", "Stage", "Threads", "Items",
+                          "Busy ms", "Input ms", "Output ms", "Items/s busy");
+        for(StageStats stage : getStats()) {
+            System.out.printf("%-10s%8d%10d%12.1f%12.1f%12.1f%14.0f%n", stage.getName(),
+                              stage.getThreads(), stage.getItems(), stage.getBusyNanos() / 1e6,
+                              stage.getInputWaitNanos() / 1e6, stage.getOutputWaitNanos() / 1e6,
+                              stage.getThroughput());
+        }
+    }
+
+    /**
+     * Return the statistics of each stage of the last run,
+     * in the order of the stages.
+     * @return The statistics.
+     */
+    public List<StageStats> getStats()
+    {
+        return Arrays.asList(reading, parsing, aggregating);
+    }
+
+    /**
+     * Read the file into blocks that end at the end of a line.
+     * The part of a line left over at the end of one block is
+     * moved to the start of the next.
+     * @param blocks Where to put the blocks.
+     * @param freeBlocks Where to find blocks that can be filled again.
+     */
+    private void read(RingBuffer<Block> blocks, RingBuffer<Block> freeBlocks) throws IOException
+    {
+        try(InputStream in = CompressedLogInput.open(file)) {
+            byte[] leftover = new byte[0];
+            int leftoverLength = 0;
+            boolean atEnd = false;
+            while(!atEnd) {
+                long start = System.nanoTime();
+                Block block = freeBlocks.poll();
+                if(block == null || block.data.length < Math.max(blockSize, leftoverLength * 2)) {
+                    block = new Block(Math.max(blockSize, leftoverLength * 2));
+                }
+                System.arraycopy(leftover, 0, block.data, 0, leftoverLength);
+                int length = leftoverLength;
+                int read = 0;
+                while(length < block.data.length
+                      && (read = in.read(block.data, length, block.data.length - length)) > 0) {
+                    length += read;
+                }
+                atEnd = read < 0;
+                // End the block after its last complete line.
+                int end = length;
+                if(!atEnd) {
+                    while(end > 0 && block.data[end - 1] != '\n') {
+                        end--;
+                    }
+                }
+                leftoverLength = length - end;
+                if(leftover.length < leftoverLength) {
+                    leftover = new byte[leftoverLength];
+                }
+                System.arraycopy(block.data, end, leftover, 0, leftoverLength);
+                block.length = end;
+                reading.work(System.nanoTime() - start, 1);
+                if(end == 0) {
+                    // No line ended in the block, so it is all in leftover.
+                    freeBlocks.offer(block);
+                }
+                else if(!putTimed(blocks, block, reading)) {
+                    return;
+                }
+            }
+        }
+        finally {
+            // Let every parser know there are no more blocks.
+            for(int i = 0; i < parsers; i++) {
+                blocks.put(END_OF_BLOCKS);
+            }
+        }
+    }
+
+    /**
+     * Parse blocks into batches of records until there are no more.
+     * @param blocks Where to take the blocks from.
+     * @param batches Where to put the batches.
+     * @param freeBlocks Where to return parsed blocks.
+     * @param freeBatches Where to find batches that can be filled again.
+     */
+    private void parse(RingBuffer<Block> blocks, RingBuffer<Batch> batches,
+                       RingBuffer<Block> freeBlocks, RingBuffer<Batch> freeBatches)
+    {
+        LoglineParser parser = new LoglineParser((logline, problem) -> {
+            throw new NoSuchElementException(problem + " on log line: " + logline);
+        });
+        int[] fields = new int[6];
+        try {
+            Block block;
+            while((block = takeTimed(blocks, parsing)) != END_OF_BLOCKS && block != null) {
+                long start = System.nanoTime();
+                Batch batch = freeBatches.poll();
+                if(batch == null) {
+                    batch = new Batch(block.length / 16 + 16);
+                }
+                batch.size = 0;
+                byte[] data = block.data;
+                int lines = 0;
+                int lineStart = 0;
+                for(int i = 0; i <= block.length; i++) {
+                    if(i == block.length || data[i] == '\n') {
+                        if(i > lineStart) {
+                            lines++;
+                            if(parser.parse(data, lineStart, i, fields)) {
+                                batch.add(LogStore.pack(fields[0], fields[1], fields[2],
+                                                        fields[3], fields[4], fields[5]));
+                            }
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                LogMetrics.linesRead(lines, block.length);
+                freeBlocks.offer(block);
+                parsing.work(System.nanoTime() - start, 1);
+                if(!putTimed(batches, batch, parsing)) {
+                    return;
+                }
+            }
+        }
+        finally {
+            batches.put(END_OF_BATCHES);
+        }
+    }
+
+    /**
+     * Pass the records of each batch to a consumer, until
+     * every parsing thread has finished.
+     * @param batches Where to take the batches from.
+     * @param freeBatches Where to return used batches.
+     * @param records Where to pass each record.
+     */
+    private void aggregate(RingBuffer<Batch> batches, RingBuffer<Batch> freeBatches,
+                           LongConsumer records)
+    {
+        int finished = 0;
+        while(finished < parsers) {
+            Batch batch = takeTimed(batches, aggregating);
+            if(batch == null) {
+                return;
+            }
+            if(batch == END_OF_BATCHES) {
+                finished++;
+                continue;
+            }
+            long start = System.nanoTime();
+            for(int i = 0; i < batch.size; i++) {
+                records.accept(batch.records[i]);
+            }
+            freeBatches.offer(batch);
+            aggregating.work(System.nanoTime() - start, 1);
+        }
+    }
+
+    /**
+     * Run the work of a stage. If it fails, the problem is kept
+     * and the queues are closed, so that the other stages stop
+     * rather than waiting for ever.
+     * @param work The work of the stage.
+     * @param blocks The queue of blocks.
+     * @param batches The queue of batches.
+     */
+    private void stage(StageWork work, RingBuffer<Block> blocks, RingBuffer<Batch> batches)
+    {
+        try {
+            work.run();
+        }
+        catch(IOException | RuntimeException | Error e) {
+            synchronized(this) {
+                if(failure == null) {
+                    failure = e;
+                }
+            }
+            blocks.close();
+            batches.close();
+        }
+    }
+
+    /**
+     * Put an item into a queue, adding the time spent waiting
+     * for room to a stage's statistics.
+     * @param queue The queue.
+     * @param item The item.
+     * @param stats The statistics of the stage.
+     * @return true if it was put, false if the queue was closed.
+     */
+    private static <T> boolean putTimed(RingBuffer<T> queue, T item, StageStats stats)
+    {
+        if(queue.offer(item)) {
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean put = queue.put(item);
+        stats.waitForOutput(System.nanoTime() - start);
+        return put;
+    }
+
+    /**
+     * Take an item from a queue, adding the time spent waiting
+     * for one to a stage's statistics.
+     * @param queue The queue.
+     * @param stats The statistics of the stage.
+     * @return The item, or null if the queue was closed.
+     */
+    private static <T> T takeTimed(RingBuffer<T> queue, StageStats stats)
+    {
+        T item = queue.poll();
+        if(item != null) {
+            return item;
+        }
+        long start = System.nanoTime();
+        item = queue.take();
+        stats.waitForInput(System.nanoTime() - start);
+        return item;
+    }
+
+    /**
+     * The work of one stage, which may fail.
+     */
+    private interface StageWork
+    {
+        void run() throws IOException;
+    }
+
+    /**
+     * Bytes of the file, ending at the end of a line.
+     */
+    private static class Block
+    {
+        // The bytes, and how many of them are in use.
+        private byte[] data;
+        private int length;
+
+        /**
+         * Create an empty block.
+         * @param capacity The number of bytes it can hold.
+         */
+        private Block(int capacity)
+        {
+            data = new byte[capacity];
+        }
+    }
+
+    /**
+     * The records parsed from a block.
+     */
+    private static class Batch
+    {
+        // The packed records, and how many of them are in use.
+        private long[] records;
+        private int size;
+
+        /**
+         * Create an empty batch.
+         * @param capacity The number of records it can hold at first.
+         */
+        private Batch(int capacity)
+        {
+            records = new long[capacity];
+        }
+
+        /**
+         * Add a record, making room for it if necessary.
+         * @param record The packed record.
+         */
+        private void add(long record)
+        {
+            if(size == records.length) {
+                records = Arrays.copyOf(records, Math.max(size * 2, 16));
+            }
+            records[size++] = record;
+        }
+    }
+
+    /**
+     * The statistics of one stage of a pipeline. The times are
+     * added up over all of the stage's threads.
+     */
+    public static class StageStats
+    {
+        // The name of the stage.
+        private String name;
+        // How many threads ran it.
+        private int threads;
+        // How many blocks or batches it handled.
+        private long items;
+        // The time spent working, waiting for input and
+        // waiting for room for output, in nanoseconds.
+        private long busyNanos;
+        private long inputWaitNanos;
+        private long outputWaitNanos;
+
+        /**
+         * Create empty statistics.
+         * @param name The name of the stage.
+         * @param threads How many threads run it.
+         */
+        private StageStats(String name, int threads)
+        {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        /**
+         * Record some work done.
+         * @param nanos How long it took.
+         * @param handled How many items it handled.
+         */
+        private synchronized void work(long nanos, long handled)
+        {
+            busyNanos += nanos;
+            items += handled;
+        }
+
+        /**
+         * Record time spent waiting for input.
+         * @param nanos How long it was.
+         */
+        private synchronized void waitForInput(long nanos)
+        {
+            inputWaitNanos += nanos;
+        }
+
+        /**
+         * Record time spent waiting for room for output.
+         * @param nanos How long it was.
+         */
+        private synchronized void waitForOutput(long nanos)
+        {
+            outputWaitNanos += nanos;
+        }
+
+        /**
+         * @return The name of the stage.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return How many threads ran the stage.
+         */
+        public int getThreads()
+        {
+            return threads;
+        }
+
+        /**
+         * @return How many blocks or batches the stage handled.
+         */
+        public synchronized long getItems()
+        {
+            return items;
+        }
+
+        /**
+         * @return The time spent working, in nanoseconds.
+         */
+        public synchronized long getBusyNanos()
+        {
+            return busyNanos;
+        }
+
+        /**
+         * @return The time spent waiting for input, in nanoseconds.
+         */
+        public synchronized long getInputWaitNanos()
+        {
+            return inputWaitNanos;
+        }
+
+        /**
+         * @return The time spent waiting for room for output, in nanoseconds.
+         */
+        public synchronized long getOutputWaitNanos()
+        {
+            return outputWaitNanos;
+        }
+
+        /**
+         * Return how many items the stage could handle each
+         * second if it never had to wait.
+         * @return The number of items per second, or 0 if none were handled.
+         */
+        public synchronized double getThroughput()
+        {
+            return busyNanos == 0 ? 0 : items * 1e9 / busyNanos * threads;
+        }
+
+        /**
+         * Return a summary of the statistics.
+         * @return The summary.
+         */
+        public synchronized String toString()
+        {
+            return String.format("%s: %d items, %.1f ms busy, %.1f ms waiting for input, "
+                                 + "%.1f ms waiting for output", name, items, busyNanos / 1e6,
+                                 inputWaitNanos / 1e6, outputWaitNanos / 1e6);
+        }
+    }
+}
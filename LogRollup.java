@@ -0,0 +1,270 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * A pre-aggregated index of a log file: the number of accesses
+ * in every hour of the log for each status code.
+ * 
+ * The rollup is saved in a binary file next to the log, named
+ * after it with ".rollup" added. The size and modification time
+ * of the log are recorded in the rollup, so a rollup that no
+ * longer matches its log is rebuilt rather than used. A saved
+ * rollup is memory-mapped when it is loaded.
+ * 
+ * The rollup file holds, in order: a magic number and version,
+ * the log's size and modification time, the first hour (in hours
+ * since 1970-01-01), the number of hours, the number of status
+ * codes, the codes, and then the counts for each hour in turn.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogRollup
+{
+    // Identifies a rollup file: "WLRU".
+    private static final int MAGIC = 0x574c5255;
+    // The version of the rollup file format.
+    private static final int VERSION = 1;
+    // Added to the name of the log to name its rollup.
+    private static final String SUFFIX = ".rollup";
+    // The largest status code a rollup can hold.
+    private static final int MAX_CODE = 1023;
+    
+    // The first hour in the rollup, in hours since 1970-01-01.
+    private long firstHour;
+    // The number of hours in the rollup.
+    private int hours;
+    // The status codes, in the order of the counts for each hour.
+    private int[] codes;
+    // The counts, hour by hour, with one count per status code.
+    private IntBuffer counts;
+
+    /**
+     * Create a rollup from its parts.
+     * @param firstHour The first hour, in hours since 1970-01-01.
+     * @param hours The number of hours.
+     * @param codes The status codes.
+     * @param counts The counts for each hour and status code.
+     */
+    private LogRollup(long firstHour, int hours, int[] codes, IntBuffer counts)
+    {
+        this.firstHour = firstHour;
+        this.hours = hours;
+        this.codes = codes;
+        this.counts = counts;
+    }
+    
+    /**
+     * Return the rollup for a log file. A saved rollup is used if it
+     * matches the log; otherwise the rollup is built from the log
+     * and saved for next time.
+     * @param log The log file.
+     * @return The rollup.
+     */
+    public static LogRollup forLog(File log) throws IOException
+    {
+        File rollupFile = new File(log.getPath() + SUFFIX);
+        LogRollup rollup = load(rollupFile, log);
+        if(rollup == null) {
+            rollup = build(log);
+            try {
+                rollup.save(rollupFile, log);
+            }
+            catch(IOException e) {
+                System.err.println("Could not save the rollup " + rollupFile + ": " + e);
+            }
+        }
+        return rollup;
+    }
+    
+    /**
+     * Load a saved rollup by memory-mapping it.
+     * @param rollupFile The rollup file.
+     * @param log The log file it was built from.
+     * @return The rollup, or null if there is no rollup file or
+     *         it does not match the log as it is now.
+     */
+    public static LogRollup load(File rollupFile, File log) throws IOException
+    {
+        if(!rollupFile.isFile()) {
+            return null;
+        }
+        try(FileChannel channel = FileChannel.open(rollupFile.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(mapped.remaining() < 40 || mapped.getInt() != MAGIC || mapped.getInt() != VERSION
+               || mapped.getLong() != log.length() || mapped.getLong() != log.lastModified()) {
+                return null;
+            }
+            long firstHour = mapped.getLong();
+            int hours = mapped.getInt();
+            int[] codes = new int[mapped.getInt()];
+            for(int i = 0; i < codes.length; i++) {
+                codes[i] = mapped.getInt();
+            }
+            IntBuffer counts = mapped.slice().asIntBuffer();
+            if(counts.remaining() != (long) hours * codes.length) {
+                return null;
+            }
+            return new LogRollup(firstHour, hours, codes, counts);
+        }
+    }
+    
+    /**
+     * Build a rollup by scanning a log file.
+     * @param log The log file.
+     * @return The rollup.
+     */
+    public static LogRollup build(File log) throws IOException
+    {
+        // The counts for each hour, by status code column.
+        TreeMap<Long, int[]> rows = new TreeMap<>();
+        // The column for each status code, or -1 if not yet seen.
+        int[] columns = new int[MAX_CODE + 1];
+        Arrays.fill(columns, -1);
+        ArrayList<Integer> codeList = new ArrayList<>();
+        
+        int[] fields = new int[6];
+        long lastKey = -1;
+        long hour = 0;
+        int[] row = null;
+        try(MappedLogScanner scanner = new MappedLogScanner(log, 0, log.length(), (logline, problem) -> {
+                throw new NoSuchElementException(problem + " on log line: " + logline);
+            })) {
+            while(scanner.next(fields)) {
+                // Sorted logs have runs of entries in the same hour.
+                long key = LogEntry.timeKey(fields[0], fields[1], fields[2], fields[3], 0);
+                if(key != lastKey) {
+                    lastKey = key;
+                    hour = LogEntry.epochDay(fields[0], fields[1], fields[2]) * 24 + fields[3];
+                    row = rows.computeIfAbsent(hour, h -> new int[4]);
+                }
+                int code = fields[5];
+                if(code < 0 || code > MAX_CODE) {
+                    throw new IllegalArgumentException("Status code out of range: " + code);
+                }
+                if(columns[code] < 0) {
+                    columns[code] = codeList.size();
+                    codeList.add(code);
+                }
+                int column = columns[code];
+                if(column >= row.length) {
+                    row = Arrays.copyOf(row, column * 2);
+                    rows.put(hour, row);
+                }
+                row[column]++;
+            }
+        }
+        
+        int[] codes = new int[codeList.size()];
+        for(int i = 0; i < codes.length; i++) {
+            codes[i] = codeList.get(i);
+        }
+        long firstHour = rows.isEmpty() ? 0 : rows.firstKey();
+        int hours = rows.isEmpty() ? 0 : Math.toIntExact(rows.lastKey() - firstHour + 1);
+        int[] counts = new int[hours * codes.length];
+        for(Map.Entry<Long, int[]> entry : rows.entrySet()) {
+            int start = (int) (entry.getKey() - firstHour) * codes.length;
+            int[] hourCounts = entry.getValue();
+            System.arraycopy(hourCounts, 0, counts, start, Math.min(hourCounts.length, codes.length));
+        }
+        return new LogRollup(firstHour, hours, codes, IntBuffer.wrap(counts));
+    }
+    
+    /**
+     * Save the rollup to a file. The file is written under a temporary
+     * name and then renamed, so a partly written rollup is never used.
+     * @param rollupFile The file to write.
+     * @param log The log file the rollup was built from.
+     */
+    public void save(File rollupFile, File log) throws IOException
+    {
+        File temp = new File(rollupFile.getPath() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(40 + 4 * codes.length + 4 * hours * codes.length);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putLong(log.length()).putLong(log.lastModified());
+        buffer.putLong(firstHour).putInt(hours).putInt(codes.length);
+        for(int code : codes) {
+            buffer.putInt(code);
+        }
+        buffer.asIntBuffer().put(counts.duplicate());
+        buffer.position(buffer.capacity());
+        buffer.flip();
+        try(FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp.toPath(), rollupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Return the number of accesses in an hour with a status code.
+     * @param hour The hour, in hours since 1970-01-01.
+     * @param code HTTP response code
+     * @return The number of accesses.
+     */
+    public int getCount(long hour, int code)
+    {
+        if(hour < firstHour || hour >= firstHour + hours) {
+            return 0;
+        }
+        for(int column = 0; column < codes.length; column++) {
+            if(codes[column] == code) {
+                return counts.get((int) (hour - firstHour) * codes.length + column);
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * @return The first hour, in hours since 1970-01-01.
+     */
+    public long getFirstHour()
+    {
+        return firstHour;
+    }
+    
+    /**
+     * @return The number of hours covered.
+     */
+    public int getHours()
+    {
+        return hours;
+    }
+    
+    /**
+     * Produce the counts that analyzing the log would give.
+     * @param statusYear The year whose status codes are to be reported.
+     * @return The counts.
+     */
+    public LogCounts toCounts(int statusYear)
+    {
+        LogCounts logCounts = new LogCounts(statusYear);
+        int[] date = new int[3];
+        for(int i = 0; i < hours; i++) {
+            long hour = firstHour + i;
+            LogEntry.epochDate(Math.floorDiv(hour, 24), date);
+            int hourOfDay = Math.floorMod(hour, 24);
+            for(int column = 0; column < codes.length; column++) {
+                int count = counts.get(i * codes.length + column);
+                if(count > 0) {
+                    logCounts.record(date[0], date[1], date[2], hourOfDay, codes[column], count);
+                }
+            }
+        }
+        return logCounts;
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sort log data into ascending order of date and time.
+ * Small batches are sorted by comparing entries. Large batches
+ * are sorted with a radix sort on the packed time keys, which
+ * takes a fixed number of passes over the data however many
+ * entries there are. Both sorts are stable, so entries with
+ * the same time keep their original order.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogSorter
+{
+    // Batches smaller than this are sorted by comparison.
+    public static final int RADIX_THRESHOLD = 4096;
+    // The number of bits sorted in each radix pass.
+    private static final int DIGIT_BITS = 8;
+    // The number of distinct values of each digit.
+    private static final int RADIX = 1 << DIGIT_BITS;
+
+    /**
+     * Sort a list of entries into ascending order.
+     * @param entries The entries to sort.
+     */
+    public static void sort(List<LogEntry> entries)
+    {
+        LogEntry[] sorted = entries.toArray(new LogEntry[entries.size()]);
+        sort(sorted);
+        for(int i = 0; i < sorted.length; i++) {
+            entries.set(i, sorted[i]);
+        }
+    }
+    
+    /**
+     * Sort an array of entries into ascending order.
+     * @param entries The entries to sort.
+     */
+    public static void sort(LogEntry[] entries)
+    {
+        long start = LogMetrics.start();
+        int size = entries.length;
+        if(size < RADIX_THRESHOLD) {
+            Arrays.sort(entries);
+        }
+        else {
+            long[] keys = new long[size];
+            int[] order = new int[size];
+            for(int i = 0; i < size; i++) {
+                keys[i] = entries[i].getWhen();
+                order[i] = i;
+            }
+            radixSort(keys, order, size);
+            LogEntry[] original = entries.clone();
+            for(int i = 0; i < size; i++) {
+                entries[i] = original[order[i]];
+            }
+        }
+        LogMetrics.sorted(start, size);
+    }
+    
+    /**
+     * Sort the first part of an array of non-negative values,
+     * such as LogStore records, into ascending order.
+     * @param values The values to sort.
+     * @param size How many values at the start of the array to sort.
+     */
+    public static void sort(long[] values, int size)
+    {
+        long start = LogMetrics.start();
+        if(size < RADIX_THRESHOLD) {
+            Arrays.sort(values, 0, size);
+        }
+        else {
+            radixSort(values, null, size);
+        }
+        LogMetrics.sorted(start, size);
+    }
+    
+    /**
+     * Sort non-negative keys with a least significant digit radix
+     * sort, moving a companion array of values along with them.
+     * Digits that are the same in every key are skipped.
+     * @param keys The keys to sort.
+     * @param values Values to be kept with the keys, or null.
+     * @param size How many keys at the start of the array to sort.
+     */
+    private static void radixSort(long[] keys, int[] values, int size)
+    {
+        long highest = 0;
+        for(int i = 0; i < size; i++) {
+            highest |= keys[i];
+        }
+        long[] keyBuffer = new long[size];
+        int[] valueBuffer = values == null ? null : new int[size];
+        long[] fromKeys = keys;
+        int[] fromValues = values;
+        long[] toKeys = keyBuffer;
+        int[] toValues = valueBuffer;
+        int[] counts = new int[RADIX];
+        
+        for(int shift = 0; shift < 64 && (highest >>> shift) != 0; shift += DIGIT_BITS) {
+            Arrays.fill(counts, 0);
+            for(int i = 0; i < size; i++) {
+                counts[(int) (fromKeys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if(counts[(int) (fromKeys[0] >>> shift) & (RADIX - 1)] == size) {
+                // Every key has the same digit here.
+                continue;
+            }
+            // Turn the counts into the starting position of each digit.
+            int position = 0;
+            for(int digit = 0; digit < RADIX; digit++) {
+                int count = counts[digit];
+                counts[digit] = position;
+                position += count;
+            }
+            for(int i = 0; i < size; i++) {
+                int target = counts[(int) (fromKeys[i] >>> shift) & (RADIX - 1)]++;
+                toKeys[target] = fromKeys[i];
+                if(values != null) {
+                    toValues[target] = fromValues[i];
+                }
+            }
+            long[] swapKeys = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swapKeys;
+            int[] swapValues = fromValues;
+            fromValues = toValues;
+            toValues = swapValues;
+        }
+        if(fromKeys != keys) {
+            System.arraycopy(fromKeys, 0, keys, 0, size);
+            if(values != null) {
+                System.arraycopy(fromValues, 0, values, 0, size);
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * A compact store of log records, holding each record packed
+ * into a single long rather than as a LogEntry object.
+ * The fields are packed with the year in the highest bits and
+ * the status code in the lowest, so records in ascending numerical
+ * order are also in ascending order of date and time.
+ * 
+ * The records can be visited through a LogEntry view that is
+ * reused for every record, so no objects are created per record.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LogStore
+{
+    // The positions of the fields within a packed record. The
+    // record is the LogEntry time key followed by the status code.
+    private static final int YEAR_SHIFT = 30, MONTH_SHIFT = 26, DAY_SHIFT = 21,
+                             HOUR_SHIFT = 16, MINUTE_SHIFT = 10;
+    // The largest status code that can be packed.
+    private static final int MAX_CODE = (1 << MINUTE_SHIFT) - 1;
+    
+    // The packed records.
+    private long[] records;
+    // How many records are held.
+    private int size;
+    // Whether the records are in ascending order.
+    private boolean sorted;
+
+    /**
+     * Create an empty store.
+     */
+    public LogStore()
+    {
+        this(1024);
+    }
+    
+    /**
+     * Create an empty store with room for a number of records.
+     * @param capacity The number of records to make room for.
+     */
+    public LogStore(int capacity)
+    {
+        records = new long[Math.max(capacity, 1)];
+        size = 0;
+        sorted = true;
+    }
+    
+    /**
+     * Create a store holding every record in a log file.
+     * @param file The log file.
+     * @return The store.
+     */
+    public static LogStore load(File file) throws IOException
+    {
+        LogStore store = new LogStore();
+        readRecords(file, store::add);
+        return store;
+    }
+    
+    /**
+     * Read every record in a log file, packed into a long.
+     * The file is read through a MappedLogScanner, so
+     * no objects are created per record, unless it is
+     * compressed, when it is read a line at a time.
+     * @param file The log file.
+     * @param records Where to pass each packed record.
+     */
+    static void readRecords(File file, LongConsumer records) throws IOException
+    {
+        int[] fields = new int[6];
+        if(CompressedLogInput.isCompressed(file)) {
+            LoglineParser parser = new LoglineParser((logline, problem) -> {
+                throw new NoSuchElementException(problem + " on log line: " + logline);
+            });
+            try(BufferedReader in = CompressedLogInput.openReader(file)) {
+                String logline;
+                while((logline = in.readLine()) != null) {
+                    LogMetrics.linesRead(1, logline.length() + 1);
+                    if(!logline.isBlank()) {
+                        parser.parse(logline, fields);
+                        records.accept(pack(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]));
+                    }
+                }
+            }
+            return;
+        }
+        try(MappedLogScanner scanner = new MappedLogScanner(file, 0, file.length(), (logline, problem) -> {
+                throw new NoSuchElementException(problem + " on log line: " + logline);
+            })) {
+            while(scanner.next(fields)) {
+                records.accept(pack(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]));
+            }
+        }
+    }
+    
+    /**
+     * Pack the fields of a record into a long.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @param hour The hour (0-23)
+     * @param minute The minute (0-59)
+     * @param code HTTP response code (0-1023)
+     * @return The packed record.
+     */
+    public static long pack(int year, int month, int day, int hour, int minute, int code)
+    {
+        return pack(LogEntry.timeKey(year, month, day, hour, minute), code);
+    }
+    
+    /**
+     * Pack a time key and status code into a long.
+     * @param timeKey The LogEntry time key.
+     * @param code HTTP response code (0-1023)
+     * @return The packed record.
+     */
+    public static long pack(long timeKey, int code)
+    {
+        if(code < 0 || code > MAX_CODE) {
+            throw new IllegalArgumentException("Status code out of range: " + code);
+        }
+        return timeKey << MINUTE_SHIFT | code;
+    }
+    
+    /**
+     * Return the time key of a packed record.
+     * @param record The packed record.
+     * @return The LogEntry time key of the record.
+     */
+    public static long timeKey(long record)
+    {
+        return record >>> MINUTE_SHIFT;
+    }
+    
+    /**
+     * Return the status code of a packed record.
+     * @param record The packed record.
+     * @return The HTTP response code of the record.
+     */
+    public static int code(long record)
+    {
+        return (int) record & MAX_CODE;
+    }
+    
+    /**
+     * Unpack the fields of a record into an array.
+     * @param record The packed record.
+     * @param fields Where to store year, month, day, hour, minute and code.
+     */
+    public static void unpack(long record, int[] fields)
+    {
+        fields[0] = (int) (record >>> YEAR_SHIFT);
+        fields[1] = (int) (record >>> MONTH_SHIFT) & 0xf;
+        fields[2] = (int) (record >>> DAY_SHIFT) & 0x1f;
+        fields[3] = (int) (record >>> HOUR_SHIFT) & 0x1f;
+        fields[4] = (int) (record >>> MINUTE_SHIFT) & 0x3f;
+        fields[5] = (int) record & MAX_CODE;
+    }
+    
+    /**
+     * Add a record to the store.
+     * @param fields The year, month, day, hour, minute and code.
+     */
+    public void add(int[] fields)
+    {
+        add(pack(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]));
+    }
+    
+    /**
+     * Add a packed record to the store.
+     * @param record The packed record.
+     */
+    public void add(long record)
+    {
+        if(size == records.length) {
+            records = Arrays.copyOf(records, size * 2);
+        }
+        if(size > 0 && records[size - 1] > record) {
+            sorted = false;
+        }
+        records[size++] = record;
+    }
+    
+    /**
+     * @return The number of records in the store.
+     */
+    public int size()
+    {
+        return size;
+    }
+    
+    /**
+     * Return a packed record.
+     * @param index The index of the record.
+     * @return The packed record.
+     */
+    public long get(int index)
+    {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return records[index];
+    }
+    
+    /**
+     * Sort the records into ascending order of date and time,
+     * unless they are already in order.
+     */
+    public void sort()
+    {
+        if(!sorted) {
+            LogSorter.sort(records, size);
+            sorted = true;
+        }
+    }
+    
+    /**
+     * Find the first record that is not less than a given value,
+     * using a binary search. The records must be sorted.
+     * @param record The packed record to search for.
+     * @return The index of the first record greater than or equal
+     *         to the given one, or size if there is none.
+     */
+    public int lowerBound(long record)
+    {
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(records[middle] < record) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Pass the records in a range of times to an aggregator, finding
+     * the start and end of the range by binary search. The records
+     * are sorted first if they are not already in order.
+     * The same LogEntry is used for each record, so the aggregator
+     * must not keep a reference to it.
+     * @param fromKey The LogEntry time key of the start of the range.
+     * @param toKey The time key just after the end of the range.
+     * @param code Only pass records with this status code, or
+     *             LogfileReader.ANY_CODE to pass them all.
+     * @param aggregator The aggregator to be updated.
+     */
+    public void forEachInRange(long fromKey, long toKey, int code, LogAggregator aggregator)
+    {
+        sort();
+        int from = lowerBound(fromKey << MINUTE_SHIFT);
+        int to = lowerBound(toKey << MINUTE_SHIFT);
+        LogEntry view = new LogEntry();
+        int[] fields = new int[6];
+        for(int i = from; i < to; i++) {
+            long record = records[i];
+            if(code == LogfileReader.ANY_CODE || (record & MAX_CODE) == code) {
+                unpack(record, fields);
+                view.set(fields);
+                aggregator.record(view);
+            }
+        }
+    }
+    
+    /**
+     * Pass every record to an aggregator, in the order they are held.
+     * The same LogEntry is used for each record, so the aggregator
+     * must not keep a reference to it.
+     * @param aggregator The aggregator to be updated.
+     */
+    public void forEach(LogAggregator aggregator)
+    {
+        LogEntry view = new LogEntry();
+        int[] fields = new int[6];
+        for(int i = 0; i < size; i++) {
+            unpack(records[i], fields);
+            view.set(fields);
+            aggregator.record(view);
+        }
+    }
+    
+    /**
+     * Return an iterator over the records, in the order they are held.
+     * The same LogEntry is returned for each record, changed to show
+     * that record, so callers must not keep a reference to it.
+     * @return The iterator.
+     */
+    public Iterator<LogEntry> iterator()
+    {
+        return new Iterator<LogEntry>() {
+            // The view of the current record.
+            private LogEntry view = new LogEntry();
+            // The unpacked fields of the current record.
+            private int[] fields = new int[6];
+            // The index of the next record.
+            private int index = 0;
+            
+            public boolean hasNext()
+            {
+                return index < size;
+            }
+            
+            public LogEntry next()
+            {
+                if(index >= size) {
+                    throw new NoSuchElementException();
+                }
+                unpack(records[index++], fields);
+                view.set(fields);
+                return view;
+            }
+        };
+    }
+}
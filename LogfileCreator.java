@@ -1,11 +1,26 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A class for creating log files of random data.
  * 
+ * Files are generated in order without sorting: the number of
+ * entries on each day is chosen first, then each day's entries
+ * are generated by minute. The days are shared out between
+ * several threads, each of which writes its part of the file
+ * directly to its final position. Given the same seed, the same
+ * file is created whatever the number of threads.
+ * 
  * @author Erik Cooke
- * @version 2019.10.16
+ * @version 2026.10.18
  * Updated creatEntry-multiple years, calculate days based on month
  *                    added status codes.
  * 
@@ -14,6 +29,17 @@ import java.util.*;
  */
 public class LogfileCreator
 {
+    // The first year, and how many years, of generated entries.
+    private static final int FIRST_YEAR = 2015, YEARS = 5;
+    // The number of minutes in a day.
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    // The length of every generated line, e.g. "2015 01 01 00 10 200\n".
+    private static final int LINE_LENGTH = 21;
+    // The number of lines each thread buffers before writing them.
+    private static final int LINES_PER_WRITE = 64 * 1024;
+    // Below this mean, binomial counts are chosen exactly.
+    private static final double EXACT_BINOMIAL_MEAN = 30;
+    
     private Random rand;
 
     /**
@@ -32,26 +58,88 @@ public class LogfileCreator
      */
     public boolean createFile(String filename, int numEntries)
     {
+        return createFile(filename, numEntries, rand.nextLong());
+    }
+    
+    /**
+     * Create a file of random log entries that can be reproduced,
+     * using one thread for each available processor.
+     * @param filename The file to write.
+     * @param numEntries How many entries.
+     * @param seed The seed for the random data. The same seed
+     *             always creates the same file.
+     * @return true if successful, false otherwise.
+     */
+    public boolean createFile(String filename, long numEntries, long seed)
+    {
+        return createFile(filename, numEntries, seed, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Create a file of random log entries that can be reproduced.
+     * @param filename The file to write.
+     * @param numEntries How many entries.
+     * @param seed The seed for the random data. The same seed
+     *             always creates the same file.
+     * @param threads How many threads to use; at least one.
+     * @return true if successful, false otherwise.
+     */
+    public boolean createFile(String filename, long numEntries, long seed, int threads)
+    {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed: " + threads);
+        }
         boolean success = false;
         
         if(numEntries > 0) {
-            try (FileWriter writer = new FileWriter(filename)) {
-                LogEntry[] entries = new LogEntry[numEntries];
-                for(int i = 0; i < numEntries; i++) {
-                    entries[i] = createEntry();
+            // The year, month and day of each day in the file.
+            int[][] days = listDays();
+            SplittableRandom random = new SplittableRandom(seed);
+            long[] dayEntries = chooseDayCounts(days, numEntries, random);
+            long[] daySeeds = new long[days.length];
+            // The number of entries before each day.
+            long[] firstEntry = new long[days.length + 1];
+            for(int i = 0; i < days.length; i++) {
+                daySeeds[i] = random.nextLong();
+                firstEntry[i + 1] = firstEntry[i] + dayEntries[i];
+            }
+            
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+                ArrayList<Future<?>> parts = new ArrayList<>();
+                // Give each thread a run of days with a similar number of entries.
+                int fromDay = 0;
+                for(int part = 1; part <= threads && fromDay < days.length; part++) {
+                    long target = numEntries * part / threads;
+                    int toDay = fromDay;
+                    while(toDay < days.length && (firstEntry[toDay + 1] <= target || part == threads)) {
+                        toDay++;
+                    }
+                    int first = fromDay;
+                    int last = toDay;
+                    parts.add(executor.submit(() -> {
+                        writeDays(channel, days, dayEntries, daySeeds, firstEntry, first, last);
+                        return null;
+                    }));
+                    fromDay = toDay;
                 }
-                Arrays.sort(entries);
-                for(int i = 0; i < numEntries; i++) {
-                    writer.write(entries[i].toString());
-                    writer.write('\n');
+                for(Future<?> part : parts) {
+                    part.get();
                 }
-                
                 success = true;
             }
-            catch(IOException e) {
+            catch(IOException | ExecutionException e) {
                 System.err.println("There was a problem writing to " + filename);
             }
-                
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("Interrupted while writing to " + filename);
+            }
+            finally {
+                executor.shutdown();
+            }
         }
         return success;
     }
@@ -63,36 +151,237 @@ public class LogfileCreator
      */
     public LogEntry createEntry()
     {
-        int year = 2015 + rand.nextInt(5);
+        int year = FIRST_YEAR + rand.nextInt(YEARS);
         int month = 1 + rand.nextInt(12);
+        int day = 1 + rand.nextInt(daysInMonth(month));
+        int hour = rand.nextInt(24);
+        int minute = rand.nextInt(60);
+        int statusCode = chooseStatusCode(rand.nextInt(101));
+        return new LogEntry(year, month, day, hour, minute, statusCode);
+    }
+    
+    /**
+     * Return the number of days in a month.
+     * February always has 28 days.
+     * @param month The month (1-12)
+     * @return The number of days.
+     */
+    private static int daysInMonth(int month)
+    {
         // Set day of month based on month
-        int day = 0;
         if(month == 2) {
-            day = 1 + rand.nextInt(28);
+            return 28;
         }
         else if(month == 4 || month == 6 || month == 9 || month == 11) {
-            day = 1 + rand.nextInt(30);
+            return 30;
         }
         else {
-            day = 1 + rand.nextInt(31);
+            return 31;
         }
-        int hour = rand.nextInt(24);
-        int minute = rand.nextInt(60);
-        int statusCode = 0;
-        int percent = rand.nextInt(101);
+    }
+    
+    /**
+     * Choose a status code from a random percentage.
+     * @param percent A random number from 0 to 100.
+     * @return The status code.
+     */
+    private static int chooseStatusCode(int percent)
+    {
         //95% of codes should be 200
         if(percent < 95) {
-            statusCode = 200;
+            return 200;
         }
         //3% of codes should be 403
         else if(percent > 97) {
-            statusCode = 403;
+            return 403;
         }
         //2% of codes should be 404
         else {
-            statusCode = 404;
+            return 404;
+        }
+    }
+    
+    /**
+     * List every day that entries can be created for, in order.
+     * @return The year, month and day of each day.
+     */
+    private static int[][] listDays()
+    {
+        ArrayList<int[]> days = new ArrayList<>();
+        for(int year = FIRST_YEAR; year < FIRST_YEAR + YEARS; year++) {
+            for(int month = 1; month <= 12; month++) {
+                for(int day = 1; day <= daysInMonth(month); day++) {
+                    days.add(new int[] {year, month, day});
+                }
+            }
+        }
+        return days.toArray(new int[days.size()][]);
+    }
+    
+    /**
+     * Choose how many entries fall on each day. Each entry is as
+     * likely to be in any month, and then on any day of that month,
+     * as with createEntry.
+     * @param days The year, month and day of each day.
+     * @param numEntries The total number of entries.
+     * @param random The source of random numbers.
+     * @return The number of entries on each day.
+     */
+    private static long[] chooseDayCounts(int[][] days, long numEntries, SplittableRandom random)
+    {
+        // The total probability of the days before each day.
+        double[] before = new double[days.length + 1];
+        for(int i = 0; i < days.length; i++) {
+            before[i + 1] = before[i] + 1.0 / (YEARS * 12 * daysInMonth(days[i][1]));
+        }
+        long[] counts = new long[days.length];
+        splitCounts(counts, before, 0, days.length, numEntries, random);
+        return counts;
+    }
+    
+    /**
+     * Share a number of entries out between a range of days,
+     * by repeatedly splitting the range in two.
+     * @param counts Where to store the number of entries on each day.
+     * @param before The total probability of the days before each day.
+     * @param from The first day of the range.
+     * @param to The day after the end of the range.
+     * @param numEntries The number of entries in the range.
+     * @param random The source of random numbers.
+     */
+    private static void splitCounts(long[] counts, double[] before, int from, int to,
+                                    long numEntries, SplittableRandom random)
+    {
+        if(to - from == 1) {
+            counts[from] = numEntries;
+        }
+        else {
+            int middle = (from + to) / 2;
+            double firstHalf = (before[middle] - before[from]) / (before[to] - before[from]);
+            long inFirstHalf = binomial(numEntries, firstHalf, random);
+            splitCounts(counts, before, from, middle, inFirstHalf, random);
+            splitCounts(counts, before, middle, to, numEntries - inFirstHalf, random);
+        }
+    }
+    
+    /**
+     * Choose how many of a number of trials succeed.
+     * Small means are chosen exactly; larger ones use the
+     * normal approximation to the binomial distribution.
+     * @param trials The number of trials.
+     * @param p The probability of each succeeding.
+     * @param random The source of random numbers.
+     * @return The number of successes.
+     */
+    private static long binomial(long trials, double p, SplittableRandom random)
+    {
+        if(trials == 0 || p <= 0) {
+            return 0;
+        }
+        if(p >= 1) {
+            return trials;
+        }
+        if(p > 0.5) {
+            return trials - binomial(trials, 1 - p, random);
+        }
+        double mean = trials * p;
+        if(mean < EXACT_BINOMIAL_MEAN) {
+            // Walk up the cumulative distribution.
+            double q = 1 - p;
+            double probability = Math.pow(q, trials);
+            double u = random.nextDouble();
+            long successes = 0;
+            while(u > probability && successes < trials) {
+                u -= probability;
+                successes++;
+                probability *= (trials - successes + 1) * p / (successes * q);
+            }
+            return successes;
+        }
+        double deviation = Math.sqrt(mean * (1 - p));
+        long successes = Math.round(mean + deviation * random.nextGaussian());
+        return Math.max(0, Math.min(trials, successes));
+    }
+    
+    /**
+     * Generate and write the entries for a run of days.
+     * @param channel The file to write to.
+     * @param days The year, month and day of each day.
+     * @param dayEntries The number of entries on each day.
+     * @param daySeeds The random seed for each day.
+     * @param firstEntry The number of entries before each day.
+     * @param fromDay The first day to write.
+     * @param toDay The day after the last one to write.
+     */
+    private static void writeDays(FileChannel channel, int[][] days, long[] dayEntries,
+                                  long[] daySeeds, long[] firstEntry, int fromDay, int toDay)
+        throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(LINES_PER_WRITE * LINE_LENGTH);
+        byte[] line = new byte[LINE_LENGTH];
+        long[] minuteCounts = new long[MINUTES_PER_DAY];
+        long position = firstEntry[fromDay] * LINE_LENGTH;
+        for(int i = fromDay; i < toDay; i++) {
+            SplittableRandom random = new SplittableRandom(daySeeds[i]);
+            Arrays.fill(minuteCounts, 0);
+            for(long n = 0; n < dayEntries[i]; n++) {
+                minuteCounts[random.nextInt(MINUTES_PER_DAY)]++;
+            }
+            setDigits(line, 0, days[i][0], 4);
+            line[4] = ' ';
+            setDigits(line, 5, days[i][1], 2);
+            line[7] = ' ';
+            setDigits(line, 8, days[i][2], 2);
+            line[10] = ' ';
+            line[13] = ' ';
+            line[16] = ' ';
+            line[20] = '\n';
+            for(int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                setDigits(line, 11, minute / 60, 2);
+                setDigits(line, 14, minute % 60, 2);
+                for(long n = 0; n < minuteCounts[minute]; n++) {
+                    setDigits(line, 17, chooseStatusCode(random.nextInt(101)), 3);
+                    if(!buffer.hasRemaining()) {
+                        position = write(channel, buffer, position);
+                    }
+                    buffer.put(line);
+                }
+            }
+        }
+        write(channel, buffer, position);
+    }
+    
+    /**
+     * Write the contents of a buffer to a position in a file.
+     * @param channel The file to write to.
+     * @param buffer The bytes to write, which is left empty.
+     * @param position Where to write them.
+     * @return The position just after the bytes written.
+     */
+    private static long write(FileChannel channel, ByteBuffer buffer, long position)
+        throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+    
+    /**
+     * Write a number as a fixed number of decimal digits,
+     * with leading zeros.
+     * @param line Where to write the digits.
+     * @param start The index of the first digit.
+     * @param value The number.
+     * @param width The number of digits.
+     */
+    private static void setDigits(byte[] line, int start, int value, int width)
+    {
+        for(int i = start + width - 1; i >= start; i--) {
+            line[i] = (byte) ('0' + value % 10);
+            value /= 10;
         }
-        return new LogEntry(year, month, day, hour, minute, statusCode);
     }
-
 }
@@ -1,10 +1,13 @@
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Scanner;
 
@@ -16,16 +19,79 @@ import java.util.Scanner;
  *    year month day hour minute
  * Log entries are sorted into ascending order of date.
  * 
+ * A reader may either load the whole file into memory (Mode.LOAD)
+ * or stream it one line at a time (Mode.STREAM or Mode.MAPPED).
+ * A streaming reader only holds the current line in memory, and
+ * supplies the entries in the order they appear in the file, which
+ * is already ascending for files written by LogfileCreator.
+ * A MAPPED reader scans the file through memory-mapped windows
+ * rather than reading it onto the heap. A COLUMNAR reader loads
+ * the file into a compact LogStore and supplies a single LogEntry
+ * that is changed to show each record in turn, so the entries it
+ * supplies must not be kept. A BINARY reader does the same from
+ * a file written by BinaryLogFormat, without parsing any text.
+ * An OFF_HEAP reader works as a COLUMNAR one does, but keeps the
+ * records in an OffHeapLogStore outside the Java heap, for logs
+ * too large to hold on it. Such a reader should be closed when it
+ * is finished with, so that its direct memory can be reclaimed.
+ * 
+ * The file may be given as a path in the file system, or as
+ * the name of a resource in the current environment. It may be
+ * compressed with gzip (see CompressedLogInput), in which case it
+ * is decompressed as it is read. A compressed file cannot be
+ * mapped, so a MAPPED reader streams it instead. A file converted
+ * to the binary form of BinaryLogFormat is always read by
+ * bulk-loading it into a LogStore, as in Mode.BINARY, whatever
+ * mode is asked for.
+ * 
+ * The entries in a range of times can be found with query. In the
+ * LOAD, COLUMNAR, BINARY and OFF_HEAP modes the range is found by
+ * binary search, so only the entries within it are visited; the
+ * streaming modes have to read the whole file.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ * 
  * @author David J. Barnes and Michael Kölling.
  * @version    2016.02.29
  */
 public class LogfileReader implements Iterator<LogEntry>
 {
+    /**
+     * The ways in which a reader can supply its data.
+     */
+    public enum Mode
+    {
+        // Read the whole file into memory and sort it.
+        LOAD,
+        // Read the file one line at a time as the data is needed.
+        STREAM,
+        // Scan the file from memory-mapped windows as the data is needed.
+        MAPPED,
+        // Read the whole file into a LogStore and sort it.
+        COLUMNAR,
+        // Load a file written by BinaryLogFormat into a LogStore.
+        BINARY,
+        // Read the whole file into an OffHeapLogStore and sort it.
+        OFF_HEAP
+    }
+    
+    // Used with query to select entries with any status code.
+    public static final int ANY_CODE = -1;
+    
     // The data format in the log file.
     private String format;
+    // How the data is supplied.
+    private Mode mode;
+    // The log file, or null if simulated data is being used.
+    private File file;
     // Where the file's contents are stored in the form
-    // of LogEntry objects.
+    // of LogEntry objects when the whole file is loaded.
     private ArrayList<LogEntry> entries;
+    // Where the file's contents are stored in columnar mode.
+    private LogStore store;
+    // Where the file's contents are stored in off-heap mode.
+    private OffHeapLogStore offHeapStore;
     // An iterator over entries.
     private Iterator<LogEntry> dataIterator;
     
@@ -43,32 +109,52 @@ public class LogfileReader implements Iterator<LogEntry>
      * @param filename The file of log data.
      */
     public LogfileReader(String filename)
+    {
+        this(filename, Mode.LOAD);
+    }
+    
+    /**
+     * Create a LogfileReader that will supply data
+     * from a particular log file in the given way.
+     * @param filename The file of log data.
+     * @param mode How the data is to be read.
+     */
+    public LogfileReader(String filename, Mode mode)
     {
         // The format for the data.
         format = "Year Month(1-12) Day Hour Minute Code";       
+        this.mode = mode;
         // Where to store the data.
         entries = new ArrayList<>();
         
         // Attempt to read the complete set of data from file.
         boolean dataRead;
         try{
-            // Locate the file with respect to the current environment.
-            URL fileURL = getClass().getClassLoader().getResource(filename);
-            if(fileURL == null) {
-                throw new FileNotFoundException(filename);
-            }
-            Scanner logfile = new Scanner(new File(fileURL.toURI()));
-            // Read the data lines until the end of file.
-            while(logfile.hasNextLine()) {
-                String logline = logfile.nextLine();
-                // Break up the line and add it to the list of entries.
-                LogEntry entry = new LogEntry(logline);
-                entries.add(entry);
-            }
-            logfile.close();
+            file = locate(filename);
+            if(BinaryLogFormat.isBinary(file)) {
+                this.mode = Mode.BINARY;
+                store = BinaryLogFormat.load(file);
+            }
+            else if(mode == Mode.BINARY) {
+                throw new IOException(file + " is not a binary log file");
+            }
+            else if(mode == Mode.MAPPED && CompressedLogInput.isCompressed(file)) {
+                this.mode = Mode.STREAM;
+            }
+            if(this.mode == Mode.LOAD) {
+                readEntries();
+            }
+            else if(this.mode == Mode.COLUMNAR) {
+                store = LogStore.load(file);
+                store.sort();
+            }
+            else if(this.mode == Mode.OFF_HEAP) {
+                offHeapStore = OffHeapLogStore.load(file);
+                offHeapStore.sort();
+            }
             dataRead = true;
         }
-        catch(FileNotFoundException | URISyntaxException e) {
+        catch(IOException | URISyntaxException e) {
             System.out.println("Problem encountered: " + e);
             dataRead = false;
         }
@@ -76,10 +162,12 @@ public class LogfileReader implements Iterator<LogEntry>
         if(!dataRead) {
             System.out.println("Failed to read the data file: " + filename);
             System.out.println("Using simulated data instead.");
+            file = null;
+            this.mode = Mode.LOAD;
             createSimulatedData(entries);
+            // Sort the entries into ascending order.
+            LogSorter.sort(entries);
         }
-        // Sort the entries into ascending order.
-        Collections.sort(entries);
         reset();
     }
     
@@ -123,14 +211,101 @@ public class LogfileReader implements Iterator<LogEntry>
         return format;
     }
     
+    /**
+     * @return How this reader supplies its data.
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+    
+    /**
+     * @return The log file, or null if simulated data is being used.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+    
+    /**
+     * Pass the entries in a range of times to an aggregator.
+     * The range is given as LogEntry time keys, such as
+     * LogEntry.timeKey(2017, 3, 1, 0, 0) to LogEntry.timeKey(2017, 4, 1, 0, 0)
+     * for March 2017. This does not affect the iteration of the reader.
+     * @param fromKey The time key of the start of the range.
+     * @param toKey The time key just after the end of the range.
+     * @param code Only pass entries with this status code,
+     *             or ANY_CODE to pass them all.
+     * @param aggregator The aggregator to be updated.
+     */
+    public void query(long fromKey, long toKey, int code, LogAggregator aggregator)
+    {
+        if(mode == Mode.COLUMNAR || mode == Mode.BINARY) {
+            store.forEachInRange(fromKey, toKey, code, aggregator);
+        }
+        else if(mode == Mode.OFF_HEAP) {
+            offHeapStore.forEachInRange(fromKey, toKey, code, aggregator);
+        }
+        else if(mode == Mode.LOAD) {
+            // Find the first entry in the range.
+            int low = 0;
+            int high = entries.size();
+            while(low < high) {
+                int middle = (low + high) >>> 1;
+                if(entries.get(middle).getWhen() < fromKey) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            for(int i = low; i < entries.size() && entries.get(i).getWhen() < toKey; i++) {
+                LogEntry entry = entries.get(i);
+                if(code == ANY_CODE || entry.getCode() == code) {
+                    aggregator.record(entry);
+                }
+            }
+        }
+        else {
+            Iterator<LogEntry> it = openIterator();
+            while(it.hasNext()) {
+                LogEntry entry = it.next();
+                long when = entry.getWhen();
+                if(when >= fromKey && when < toKey
+                   && (code == ANY_CODE || entry.getCode() == code)) {
+                    aggregator.record(entry);
+                }
+            }
+        }
+    }
+    
     /**
      * Set up a fresh iterator to provide access to the data.
      * This allows a single file of data to be processed
-     * more than once.
+     * more than once. A streaming reader reopens the file.
      */
     public void reset()
     {
-        dataIterator = entries.iterator();
+        if(dataIterator instanceof ClosingIterator) {
+            ((ClosingIterator) dataIterator).close();
+        }
+        dataIterator = openIterator();
+    }
+
+    /**
+     * Release what the reader holds outside the Java heap: the
+     * file being streamed, if any, and the records of an OFF_HEAP
+     * reader, which are dropped. A streaming reader can be reset to
+     * read the file again; an OFF_HEAP reader has no more data.
+     */
+    public void close()
+    {
+        if(dataIterator instanceof ClosingIterator) {
+            ((ClosingIterator) dataIterator).close();
+        }
+        if(offHeapStore != null) {
+            offHeapStore.close();
+        }
     }
 
     /**
@@ -138,8 +313,81 @@ public class LogfileReader implements Iterator<LogEntry>
      */    
     public void printData()
     {
-        for(LogEntry entry : entries) {
-            System.out.println(entry);
+        Iterator<LogEntry> it = openIterator();
+        while(it.hasNext()) {
+            System.out.println(it.next());
+        }
+    }
+
+    /**
+     * Find the log file, either as a path in the file system
+     * or with respect to the current environment.
+     * @param filename The name of the file.
+     * @return The log file.
+     */
+    private File locate(String filename)
+        throws FileNotFoundException, URISyntaxException
+    {
+        File path = new File(filename);
+        if(path.isFile()) {
+            return path;
+        }
+        URL fileURL = getClass().getClassLoader().getResource(filename);
+        if(fileURL == null) {
+            throw new FileNotFoundException(filename);
+        }
+        return new File(fileURL.toURI());
+    }
+    
+    /**
+     * Read every line of the file into entries.
+     * The entries are only sorted if they were not
+     * already in ascending order in the file.
+     */
+    private void readEntries() throws IOException
+    {
+        boolean sorted = true;
+        LogEntry previous = null;
+        Scanner logfile = new Scanner(CompressedLogInput.open(file), "ISO-8859-1");
+        // Read the data lines until the end of file.
+        while(logfile.hasNextLine()) {
+            String logline = logfile.nextLine();
+            LogMetrics.linesRead(1, logline.length() + 1);
+            // Break up the line and add it to the list of entries.
+            LogEntry entry = new LogEntry(logline);
+            if(previous != null && previous.compareTo(entry) > 0) {
+                sorted = false;
+            }
+            entries.add(entry);
+            previous = entry;
+        }
+        logfile.close();
+        // Sort the entries into ascending order.
+        if(!sorted) {
+            LogSorter.sort(entries);
+        }
+    }
+    
+    /**
+     * Create an iterator over the data from the start.
+     * @return A new iterator over the data.
+     */
+    private Iterator<LogEntry> openIterator()
+    {
+        if(mode == Mode.STREAM) {
+            return new LineIterator();
+        }
+        else if(mode == Mode.MAPPED) {
+            return new MappedIterator();
+        }
+        else if(mode == Mode.COLUMNAR || mode == Mode.BINARY) {
+            return store.iterator();
+        }
+        else if(mode == Mode.OFF_HEAP) {
+            return offHeapStore.iterator();
+        }
+        else {
+            return entries.iterator();
         }
     }
 
@@ -158,4 +406,160 @@ public class LogfileReader implements Iterator<LogEntry>
             data.add(creator.createEntry());
         }
     }
+    
+    /**
+     * An iterator over the file that must be closed if
+     * it is abandoned before reaching the end.
+     */
+    private interface ClosingIterator extends Iterator<LogEntry>
+    {
+        /**
+         * Release the file.
+         */
+        void close();
+    }
+    
+    /**
+     * An iterator that reads the log file one line at a time.
+     * Only the next line of the file is held in memory.
+     */
+    private class LineIterator implements ClosingIterator
+    {
+        // The open file, or null once the end has been reached.
+        private BufferedReader in;
+        // The line to be supplied next, or null at the end.
+        private String nextLine;
+        
+        /**
+         * Open the log file and read ahead to the first line.
+         */
+        public LineIterator()
+        {
+            try {
+                in = CompressedLogInput.openReader(file);
+                advance();
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        /**
+         * @return true if there is another line to supply.
+         */
+        public boolean hasNext()
+        {
+            return nextLine != null;
+        }
+        
+        /**
+         * @return The entry for the next line of the file.
+         */
+        public LogEntry next()
+        {
+            if(nextLine == null) {
+                throw new NoSuchElementException();
+            }
+            LogEntry entry = new LogEntry(nextLine);
+            try {
+                advance();
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return entry;
+        }
+        
+        /**
+         * Close the file if it is still open.
+         */
+        public void close()
+        {
+            if(in != null) {
+                try {
+                    in.close();
+                }
+                catch(IOException e) {
+                    System.err.println("Problem closing " + file + ": " + e);
+                }
+                in = null;
+                nextLine = null;
+            }
+        }
+        
+        /**
+         * Read the next line, closing the file at the end.
+         */
+        private void advance() throws IOException
+        {
+            nextLine = in.readLine();
+            if(nextLine == null) {
+                close();
+            }
+            else {
+                LogMetrics.linesRead(1, nextLine.length() + 1);
+            }
+        }
+    }
+    
+    /**
+     * An iterator that scans the log file from memory-mapped windows.
+     */
+    private class MappedIterator implements ClosingIterator
+    {
+        // The scanner over the file.
+        private MappedLogScanner scanner;
+        // The values of the line to be supplied next.
+        private int[] fields;
+        // Whether fields holds a line that has not been supplied.
+        private boolean available;
+        
+        /**
+         * Map the log file and read ahead to the first line.
+         */
+        public MappedIterator()
+        {
+            fields = new int[6];
+            try {
+                scanner = new MappedLogScanner(file, 0, file.length(), (logline, problem) -> {
+                    throw new NoSuchElementException(problem + " on log line: " + logline);
+                });
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            available = scanner.next(fields);
+        }
+        
+        /**
+         * @return true if there is another line to supply.
+         */
+        public boolean hasNext()
+        {
+            return available;
+        }
+        
+        /**
+         * @return The entry for the next line of the file.
+         */
+        public LogEntry next()
+        {
+            if(!available) {
+                throw new NoSuchElementException();
+            }
+            LogEntry entry = new LogEntry(fields[0], fields[1], fields[2],
+                                          fields[3], fields[4], fields[5]);
+            available = scanner.next(fields);
+            return entry;
+        }
+        
+        /**
+         * Release the file.
+         */
+        public void close()
+        {
+            scanner.close();
+            available = false;
+        }
+    }
 }
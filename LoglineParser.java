@@ -0,0 +1,257 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read the integer fields of a web server log line directly
+ * from its bytes or characters.
+ * No objects are created while parsing a well-formed line:
+ * the values are placed in an array supplied by the caller.
+ * Malformed lines are passed to a ParseErrorHandler.
+ * 
+ * A parser holds no state between lines, so a single
+ * parser may be shared by any number of threads.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class LoglineParser
+{
+    // Where malformed lines are reported.
+    private ParseErrorHandler errorHandler;
+
+    /**
+     * Create a parser.
+     * @param errorHandler Where to report malformed lines.
+     */
+    public LoglineParser(ParseErrorHandler errorHandler)
+    {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Parse a line held in a byte array. The number of values
+     * on the line must be sufficient to fill the fields array;
+     * any further values are ignored.
+     * @param buffer The bytes containing the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index just past the last byte of the line.
+     * @param fields Where to store the values.
+     * @return true if the line was parsed, false if it was malformed.
+     */
+    public boolean parse(byte[] buffer, int start, int end, int[] fields)
+    {
+        int field = 0;
+        long value = 0;
+        int digits = 0;
+        // Every value and its number of digits, or'd together.
+        long values = 0;
+        int widths = 0;
+        for(int i = start; i < end && field < fields.length; i++) {
+            int c = buffer[i];
+            if(c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+            else if(isSpace(c)) {
+                if(digits > 0) {
+                    values |= value;
+                    widths |= digits;
+                    fields[field++] = (int) value;
+                    value = 0;
+                    digits = 0;
+                }
+            }
+            else {
+                return report(text(buffer, start, end), unexpected(c));
+            }
+        }
+        if(digits > 0) {
+            values |= value;
+            widths |= digits;
+            fields[field++] = (int) value;
+        }
+        if(field < fields.length) {
+            return report(text(buffer, start, end), "Insufficient data items");
+        }
+        if(tooLarge(values, widths)) {
+            return report(text(buffer, start, end), "Value too large");
+        }
+        return true;
+    }
+    
+    /**
+     * Parse a line held in a ByteBuffer, such as a memory-mapped file.
+     * The buffer's position and limit are not changed.
+     * @param buffer The bytes containing the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index just past the last byte of the line.
+     * @param fields Where to store the values.
+     * @return true if the line was parsed, false if it was malformed.
+     */
+    public boolean parse(ByteBuffer buffer, int start, int end, int[] fields)
+    {
+        if(buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            return parse(buffer.array(), offset + start, offset + end, fields);
+        }
+        int field = 0;
+        long value = 0;
+        int digits = 0;
+        // Every value and its number of digits, or'd together.
+        long values = 0;
+        int widths = 0;
+        for(int i = start; i < end && field < fields.length; i++) {
+            int c = buffer.get(i);
+            if(c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+            else if(isSpace(c)) {
+                if(digits > 0) {
+                    values |= value;
+                    widths |= digits;
+                    fields[field++] = (int) value;
+                    value = 0;
+                    digits = 0;
+                }
+            }
+            else {
+                return report(text(buffer, start, end), unexpected(c));
+            }
+        }
+        if(digits > 0) {
+            values |= value;
+            widths |= digits;
+            fields[field++] = (int) value;
+        }
+        if(field < fields.length) {
+            return report(text(buffer, start, end), "Insufficient data items");
+        }
+        if(tooLarge(values, widths)) {
+            return report(text(buffer, start, end), "Value too large");
+        }
+        return true;
+    }
+    
+    /**
+     * Parse a line of text.
+     * @param logline The line to be parsed.
+     * @param fields Where to store the values.
+     * @return true if the line was parsed, false if it was malformed.
+     */
+    public boolean parse(CharSequence logline, int[] fields)
+    {
+        int end = logline.length();
+        int field = 0;
+        long value = 0;
+        int digits = 0;
+        // Every value and its number of digits, or'd together.
+        long values = 0;
+        int widths = 0;
+        for(int i = 0; i < end && field < fields.length; i++) {
+            int c = logline.charAt(i);
+            if(c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+            else if(isSpace(c)) {
+                if(digits > 0) {
+                    values |= value;
+                    widths |= digits;
+                    fields[field++] = (int) value;
+                    value = 0;
+                    digits = 0;
+                }
+            }
+            else {
+                return report(logline.toString(), unexpected(c));
+            }
+        }
+        if(digits > 0) {
+            values |= value;
+            widths |= digits;
+            fields[field++] = (int) value;
+        }
+        if(field < fields.length) {
+            return report(logline.toString(), "Insufficient data items");
+        }
+        if(tooLarge(values, widths)) {
+            return report(logline.toString(), "Value too large");
+        }
+        return true;
+    }
+    
+    /**
+     * Were any of the values on a line too large for an int? The
+     * values are read as longs, which cannot wrap round in fewer
+     * than 19 digits, so a value of more than 15 digits is taken
+     * to be too large whatever its value. Checking once per line
+     * keeps the check out of the loop over the characters.
+     * @param values Every value on the line, or'd together.
+     * @param widths The number of digits of every value, or'd together.
+     * @return true if any value was too large.
+     */
+    private static boolean tooLarge(long values, int widths)
+    {
+        return values > Integer.MAX_VALUE || widths > 15;
+    }
+    
+    /**
+     * Is a character one that separates values?
+     * @param c The character.
+     * @return true if it is white space.
+     */
+    private static boolean isSpace(int c)
+    {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+    
+    /**
+     * Describe an unexpected character.
+     * @param c The character.
+     * @return The description.
+     */
+    private static String unexpected(int c)
+    {
+        return "Unexpected character '" + (char) (c & 0xff) + "'";
+    }
+    
+    /**
+     * Copy a line out of a byte array for reporting.
+     * @param buffer The bytes containing the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index just past the last byte of the line.
+     * @return The text of the line.
+     */
+    private static String text(byte[] buffer, int start, int end)
+    {
+        return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Copy a line out of a ByteBuffer for reporting.
+     * @param buffer The bytes containing the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index just past the last byte of the line.
+     * @return The text of the line.
+     */
+    private static String text(ByteBuffer buffer, int start, int end)
+    {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Pass a malformed line to the error handler.
+     * @param logline The text of the line.
+     * @param problem What was wrong with it.
+     * @return false, so that parse can return the result directly.
+     */
+    private boolean report(String logline, String problem)
+    {
+        LogMetrics.parseFailure();
+        errorHandler.malformedLine(logline, problem);
+        return false;
+    }
+}
@@ -1,4 +1,4 @@
-import java.util.Scanner;
+import java.util.NoSuchElementException;
 
 /**
  * Break up line from a web server log file into
@@ -6,16 +6,40 @@ import java.util.Scanner;
  * Currently, the log file is assumed to contain simply
  * integer date and time information.
  * 
+ * The work is done by a LoglineParser, which reads the
+ * digits directly rather than using a Scanner.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ * 
  * @author David J. Barnes and Michael Kolling.
  * @version    2016.02.29
  */
 public class LoglineTokenizer
 {
+    // The parser that extracts the values.
+    private LoglineParser parser;
+    
     /**
-     * Construct a LogLineAnalyzer
+     * Construct a LogLineAnalyzer.
+     * A malformed line causes tokenize to throw
+     * a NoSuchElementException.
      */
     public LoglineTokenizer()
     {
+        this((logline, problem) -> {
+            throw new NoSuchElementException(problem + " on log line: " + logline);
+        });
+    }
+    
+    /**
+     * Construct a LogLineAnalyzer that reports
+     * malformed lines to the given handler.
+     * @param errorHandler Where to report malformed lines.
+     */
+    public LoglineTokenizer(ParseErrorHandler errorHandler)
+    {
+        parser = new LoglineParser(errorHandler);
     }
 
     /**
@@ -25,19 +49,11 @@ public class LoglineTokenizer
      *
      * @param logline The line to be tokenized.
      * @param dataLine Where to store the values.
+     * @return true if the line was tokenized,
+     *         false if it was reported as malformed.
      */
-    public void tokenize(String logline, int[] dataLine)
+    public boolean tokenize(String logline, int[] dataLine)
     {
-        try {
-            // Scan the logline for integers.
-            Scanner tokenizer = new Scanner(logline);
-            for(int i = 0; i < dataLine.length; i++) {
-                dataLine[i] = tokenizer.nextInt();
-            }
-        }
-        catch(java.util.NoSuchElementException e) {
-            System.out.println("Insuffient data items on log line: " + logline);
-            throw e;
-        }
+        return parser.parse(logline, dataLine);
     }
 }
@@ -0,0 +1,165 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scan the records of a log file directly from memory-mapped
+ * windows of the file, without copying its contents onto the heap.
+ * Files of any size can be scanned, since only one window of
+ * the file is mapped at a time.
+ * 
+ * The scanner can cover the whole file or a range of bytes within
+ * it. A range should start at the beginning of a line and end just
+ * after a line terminator (or at the end of the file).
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class MappedLogScanner implements AutoCloseable
+{
+    // The largest number of bytes to map at once.
+    public static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    
+    // The file being scanned.
+    private FileChannel channel;
+    // Used to read the values from each line.
+    private LoglineParser parser;
+    // The size of the windows to be mapped.
+    private int windowSize;
+    // The file position just past the last byte to scan.
+    private long end;
+    // The file position of the start of the current window.
+    private long windowStart;
+    // The currently mapped window, or null once closed.
+    private MappedByteBuffer window;
+    // The index in window of the next line to be read.
+    private int index;
+    // The file position of the first byte to scan.
+    private long start;
+    // The number of lines scanned, for LogMetrics.
+    private long lines;
+
+    /**
+     * Create a scanner over a whole file.
+     * Malformed lines are reported on System.err and skipped.
+     * @param file The log file.
+     */
+    public MappedLogScanner(File file) throws IOException
+    {
+        this(file, 0, file.length(), (logline, problem) ->
+             System.err.println(problem + " on log line: " + logline));
+    }
+    
+    /**
+     * Create a scanner over a range of bytes in a file.
+     * @param file The log file.
+     * @param start The position of the first byte to scan.
+     * @param end The position just past the last byte to scan.
+     * @param errorHandler Where to report malformed lines.
+     */
+    public MappedLogScanner(File file, long start, long end, ParseErrorHandler errorHandler)
+        throws IOException
+    {
+        this(file, start, end, errorHandler, WINDOW_SIZE);
+    }
+    
+    /**
+     * Create a scanner over a range of bytes in a file,
+     * mapping windows of a particular size.
+     * @param file The log file.
+     * @param start The position of the first byte to scan.
+     * @param end The position just past the last byte to scan.
+     * @param errorHandler Where to report malformed lines.
+     * @param windowSize The most bytes to map at once.
+     *                   This must be longer than any line.
+     */
+    public MappedLogScanner(File file, long start, long end, ParseErrorHandler errorHandler,
+                            int windowSize)
+        throws IOException
+    {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        parser = new LoglineParser(errorHandler);
+        this.windowSize = windowSize;
+        this.end = Math.min(end, channel.size());
+        this.start = start;
+        map(start);
+    }
+    
+    /**
+     * Read the values from the next line of the file.
+     * Blank lines and malformed lines are skipped.
+     * @param fields Where to store the values.
+     * @return true if a line was read, false at the end of the range.
+     */
+    public boolean next(int[] fields)
+    {
+        while(window != null) {
+            int limit = window.limit();
+            int lineEnd = index;
+            while(lineEnd < limit && window.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if(lineEnd == limit && windowStart + limit < end) {
+                // The line continues beyond this window.
+                if(index == 0) {
+                    throw new IllegalStateException("Line longer than " + windowSize
+                                                    + " bytes at position " + windowStart);
+                }
+                map(windowStart + index);
+            }
+            else if(index == limit) {
+                // Nothing left to scan.
+                close();
+            }
+            else {
+                int lineStart = index;
+                index = Math.min(lineEnd + 1, limit);
+                if(lineEnd > lineStart) {
+                    lines++;
+                    if(parser.parse(window, lineStart, lineEnd, fields)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Release the file. The scanner cannot be used afterwards.
+     */
+    public void close()
+    {
+        if(window != null) {
+            // Report once, however many times this is called.
+            LogMetrics.linesRead(lines, windowStart + index - start);
+        }
+        window = null;
+        try {
+            channel.close();
+        }
+        catch(IOException e) {
+            System.err.println("Problem closing log file: " + e);
+        }
+    }
+    
+    /**
+     * Map the next window of the file.
+     * @param position The file position at which the window starts.
+     */
+    private void map(long position)
+    {
+        try {
+            long size = Math.min(windowSize, Math.max(0, end - position));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            windowStart = position;
+            index = 0;
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A store of log records held outside the Java heap, for logs
+ * too large to keep as objects. Each record is packed into a long,
+ * as in LogStore, and the records are held in fixed-size chunks of
+ * direct memory, so the heap holds only one small object per chunk
+ * however many records there are, and the garbage collector has
+ * nothing to trace or copy as the store grows.
+ *
+ * The records are sorted where they are, by a radix sort that
+ * moves each record directly to its place rather than through a
+ * second array, and are visited through a LogEntry view that is
+ * reused for every record.
+ *
+ * Direct memory counts against the JVM's limit, set with
+ * -XX:MaxDirectMemorySize and by default the same as the largest
+ * heap, so a store of n records needs about 8n bytes of it. The
+ * memory of a store that is no longer used is only released once
+ * the store has been garbage collected, which may not happen before
+ * the limit is reached; close a store when finished with it so its
+ * chunks are dropped at once and can be reclaimed when more direct
+ * memory is needed.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class OffHeapLogStore
+{
+    // The number of records in each chunk, as a power of two.
+    private static final int CHUNK_SHIFT = 17;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // The number of bits sorted at each level of the radix sort.
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    // Ranges no longer than this are sorted by insertion.
+    private static final int INSERTION_THRESHOLD = 32;
+
+    // The chunks of packed records.
+    private LongBuffer[] chunks;
+    // How many chunks have been allocated.
+    private int chunkCount;
+    // How many records are held.
+    private long size;
+    // Whether the records are in ascending order.
+    private boolean sorted;
+
+    /**
+     * Create an empty store.
+     */
+    public OffHeapLogStore()
+    {
+        chunks = new LongBuffer[16];
+        chunkCount = 0;
+        size = 0;
+        sorted = true;
+    }
+
+    /**
+     * Create a store holding every record in a log file,
+     * which may be compressed.
+     * @param file The log file.
+     * @return The store.
+     */
+    public static OffHeapLogStore load(File file) throws IOException
+    {
+        OffHeapLogStore store = new OffHeapLogStore();
+        try {
+            LogStore.readRecords(file, store::add);
+        }
+        catch(IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Add a record to the store.
+     * @param fields The year, month, day, hour, minute and code.
+     */
+    public void add(int[] fields)
+    {
+        add(LogStore.pack(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5]));
+    }
+
+    /**
+     * Add a packed record to the store.
+     * @param record The packed record, from LogStore.pack.
+     */
+    public void add(long record)
+    {
+        if(record < 0) {
+            // The radix sort orders records as unsigned values.
+            throw new IllegalArgumentException("Record out of range: " + record);
+        }
+        int offset = (int) (size & CHUNK_MASK);
+        if(offset == 0 && size >> CHUNK_SHIFT == chunkCount) {
+            addChunk();
+        }
+        if(size > 0 && read(size - 1) > record) {
+            sorted = false;
+        }
+        chunks[(int) (size >> CHUNK_SHIFT)].put(offset, record);
+        size++;
+    }
+
+    /**
+     * Drop all the records and the direct memory holding them,
+     * leaving the store empty. The memory is reclaimed by the JVM
+     * when it next needs direct memory, or sooner.
+     */
+    public void close()
+    {
+        chunks = new LongBuffer[16];
+        chunkCount = 0;
+        size = 0;
+        sorted = true;
+    }
+
+    /**
+     * @return The number of records in the store.
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the number of bytes of direct memory allocated.
+     * @return The number of bytes.
+     */
+    public long getOffHeapBytes()
+    {
+        return (long) chunkCount * CHUNK_SIZE * Long.BYTES;
+    }
+
+    /**
+     * Return a packed record.
+     * @param index The index of the record.
+     * @return The packed record.
+     */
+    public long get(long index)
+    {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return read(index);
+    }
+
+    /**
+     * Sort the records into ascending order of date and time,
+     * unless they are already in order.
+     */
+    public void sort()
+    {
+        if(sorted) {
+            return;
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for(long i = 0; i < size; i++) {
+            long record = read(i);
+            min = Math.min(min, record);
+            max = Math.max(max, record);
+        }
+        // Only the bits below the highest that differs need sorting.
+        int bits = 64 - Long.numberOfLeadingZeros(min ^ max);
+        int levels = Math.max((bits + DIGIT_BITS - 1) / DIGIT_BITS, 1);
+        radixSort(0, size, Math.max(bits - DIGIT_BITS, 0), 0, new long[levels + 1][RADIX + 1]);
+        sorted = true;
+    }
+
+    /**
+     * Find the first record that is not less than a given value,
+     * using a binary search. The records must be sorted.
+     * @param record The packed record to search for.
+     * @return The index of the first record greater than or equal
+     *         to the given one, or size if there is none.
+     */
+    public long lowerBound(long record)
+    {
+        long low = 0;
+        long high = size;
+        while(low < high) {
+            long middle = (low + high) >>> 1;
+            if(read(middle) < record) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Pass the records in a range of times to an aggregator, finding
+     * the start and end of the range by binary search. The records
+     * are sorted first if they are not already in order.
+     * The same LogEntry is used for each record, so the aggregator
+     * must not keep a reference to it.
+     * @param fromKey The LogEntry time key of the start of the range.
+     * @param toKey The time key just after the end of the range.
+     * @param code Only pass records with this status code, or
+     *             LogfileReader.ANY_CODE to pass them all.
+     * @param aggregator The aggregator to be updated.
+     */
+    public void forEachInRange(long fromKey, long toKey, int code, LogAggregator aggregator)
+    {
+        sort();
+        long from = lowerBound(LogStore.pack(fromKey, 0));
+        long to = lowerBound(LogStore.pack(toKey, 0));
+        LogEntry view = new LogEntry();
+        int[] fields = new int[6];
+        for(long i = from; i < to; i++) {
+            long record = read(i);
+            if(code == LogfileReader.ANY_CODE || LogStore.code(record) == code) {
+                LogStore.unpack(record, fields);
+                view.set(fields);
+                aggregator.record(view);
+            }
+        }
+    }
+
+    /**
+     * Return an iterator over the records, in the order they are held.
+     * The same LogEntry is returned for each record, changed to show
+     * that record, so callers must not keep a reference to it.
+     * @return The iterator.
+     */
+    public Iterator<LogEntry> iterator()
+    {
+        return new Iterator<LogEntry>() {
+            // The view of the current record.
+            private LogEntry view = new LogEntry();
+            // The unpacked fields of the current record.
+            private int[] fields = new int[6];
+            // The index of the next record.
+            private long index = 0;
+
+            public boolean hasNext()
+            {
+                return index < size;
+            }
+
+            public LogEntry next()
+            {
+                if(index >= size) {
+                    throw new NoSuchElementException();
+                }
+                LogStore.unpack(read(index++), fields);
+                view.set(fields);
+                return view;
+            }
+        };
+    }
+
+    /**
+     * Sort a range of records by the digit at one position, moving
+     * each record into the part of the range for its digit, then
+     * sort each part by the next digit down. This is the American
+     * flag sort, which needs no second copy of the records.
+     * @param from The index of the first record of the range.
+     * @param to The index after the last record of the range.
+     * @param shift The position of the lowest bit of the digit.
+     * @param level How many digits above this one have been sorted.
+     * @param bounds Where to store the bounds of the parts, one row
+     *               for each level, so no arrays are created per range.
+     */
+    private void radixSort(long from, long to, int shift, int level, long[][] bounds)
+    {
+        if(to - from <= INSERTION_THRESHOLD) {
+            insertionSort(from, to);
+            return;
+        }
+        long[] ends = bounds[level];
+        Arrays.fill(ends, 0);
+        for(long i = from; i < to; i++) {
+            ends[digit(read(i), shift) + 1]++;
+        }
+        ends[0] = from;
+        for(int d = 1; d <= RADIX; d++) {
+            ends[d] += ends[d - 1];
+        }
+        // ends[d] is the start of part d; next[d] is where its next record goes.
+        long[] next = bounds[bounds.length - 1];
+        System.arraycopy(ends, 0, next, 0, RADIX);
+        for(int d = 0; d < RADIX; d++) {
+            while(next[d] < ends[d + 1]) {
+                long record = read(next[d]);
+                int digit = digit(record, shift);
+                // Swap records into their parts until one belongs here.
+                while(digit != d) {
+                    long displaced = read(next[digit]);
+                    write(next[digit]++, record);
+                    record = displaced;
+                    digit = digit(record, shift);
+                }
+                write(next[d]++, record);
+            }
+        }
+        if(shift > 0) {
+            int lower = Math.max(shift - DIGIT_BITS, 0);
+            for(int d = 0; d < RADIX; d++) {
+                if(ends[d + 1] - ends[d] > 1) {
+                    radixSort(ends[d], ends[d + 1], lower, level + 1, bounds);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort a short range of records by insertion.
+     * @param from The index of the first record of the range.
+     * @param to The index after the last record of the range.
+     */
+    private void insertionSort(long from, long to)
+    {
+        for(long i = from + 1; i < to; i++) {
+            long record = read(i);
+            long j = i - 1;
+            while(j >= from && read(j) > record) {
+                write(j + 1, read(j));
+                j--;
+            }
+            write(j + 1, record);
+        }
+    }
+
+    /**
+     * Return the digit of a record at a position.
+     * @param record The packed record.
+     * @param shift The position of the lowest bit of the digit.
+     * @return The digit.
+     */
+    private static int digit(long record, int shift)
+    {
+        return (int) (record >>> shift) & (RADIX - 1);
+    }
+
+    /**
+     * Read a record without checking the index.
+     * @param index The index of the record.
+     * @return The packed record.
+     */
+    private long read(long index)
+    {
+        return chunks[(int) (index >> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    /**
+     * Write a record without checking the index.
+     * @param index The index of the record.
+     * @param record The packed record.
+     */
+    private void write(long index, long record)
+    {
+        chunks[(int) (index >> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), record);
+    }
+
+    /**
+     * Allocate another chunk of direct memory.
+     */
+    private void addChunk()
+    {
+        if(chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(CHUNK_SIZE * Long.BYTES)
+                                         .order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Count the accesses in a log file using several threads.
+ * The file is split into ranges of bytes that start and end
+ * on line boundaries. Each worker scans one range into its own
+ * LogCounts, and the partial counts are then merged, so the
+ * result is the same as counting the whole file in one thread.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ParallelLogAnalyzer
+{
+    // The log file.
+    private File file;
+    // How many workers to use.
+    private int workers;
+
+    /**
+     * Create an analyzer for a log file.
+     * @param file The log file.
+     * @param workers How many workers to use (at least 1).
+     */
+    public ParallelLogAnalyzer(File file, int workers)
+    {
+        if(workers < 1) {
+            throw new IllegalArgumentException("At least one worker is needed: " + workers);
+        }
+        this.file = file;
+        this.workers = workers;
+    }
+
+    /**
+     * Count every access in the file.
+     * @param year The year whose status codes are to be reported.
+     * @return The combined counts.
+     */
+    public LogCounts analyze(int year) throws IOException
+    {
+        long[] bounds = split(file, workers);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            ArrayList<Future<LogCounts>> parts = new ArrayList<>();
+            for(int i = 0; i < bounds.length - 1; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                parts.add(executor.submit(() -> analyzeRange(start, end, year)));
+            }
+            LogCounts total = new LogCounts(year);
+            for(Future<LogCounts> part : parts) {
+                total.merge(part.get());
+            }
+            return total;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing " + file, e);
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Problem analyzing " + file, cause);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Split a file into ranges that start at the beginning of a line.
+     * @param file The file to split.
+     * @param parts How many ranges are wanted.
+     * @return The start of each range, followed by the length of
+     *         the file. There may be fewer ranges than asked for
+     *         if the file is small.
+     */
+    public static long[] split(File file, int parts) throws IOException
+    {
+        try(RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            ArrayList<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            for(int i = 1; i < parts; i++) {
+                long position = Math.max(length * i / parts, bounds.get(bounds.size() - 1));
+                // Move on to the start of the next line.
+                in.seek(position);
+                while(position < length && in.read() != '\n') {
+                    position++;
+                }
+                position = Math.min(position + 1, length);
+                if(position > bounds.get(bounds.size() - 1) && position < length) {
+                    bounds.add(position);
+                }
+            }
+            bounds.add(length);
+            long[] result = new long[bounds.size()];
+            for(int i = 0; i < result.length; i++) {
+                result[i] = bounds.get(i);
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Count the accesses in one range of the file.
+     * @param start The position of the first byte of the range.
+     * @param end The position just past the end of the range.
+     * @param year The year whose status codes are to be reported.
+     * @return The counts for the range.
+     */
+    private LogCounts analyzeRange(long start, long end, int year) throws IOException
+    {
+        LogCounts counts = new LogCounts(year);
+        int[] fields = new int[6];
+        try(MappedLogScanner scanner = new MappedLogScanner(file, start, end, (logline, problem) -> {
+                throw new NoSuchElementException(problem + " on log line: " + logline);
+            })) {
+            while(scanner.next(fields)) {
+                counts.record(fields[0], fields[1], fields[2], fields[3], fields[5]);
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Receive reports of log lines that could not be parsed.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public interface ParseErrorHandler
+{
+    /**
+     * Called when a log line is malformed.
+     * @param logline The text of the line.
+     * @param problem A description of what was wrong with it.
+     */
+    void malformedLine(String logline, String problem);
+}
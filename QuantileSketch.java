@@ -0,0 +1,186 @@
+/**
+ * Approximate quantiles of a stream of counts, such as the
+ * number of accesses in each minute of a log, e.g. the median
+ * or the 99th percentile.
+ * 
+ * Values are counted in buckets whose bounds grow geometrically,
+ * so that every quantile is returned to within a fixed relative
+ * accuracy, e.g. 1%, however many values there are and however
+ * they are spread (as in DDSketch). Only a few hundred buckets
+ * are needed for counts up to the billions.
+ * 
+ * Sketches with the same accuracy can be merged, so separate
+ * parts of a log can be counted independently.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class QuantileSketch
+{
+    // The relative accuracy of the quantiles.
+    private double accuracy;
+    // The ratio of the bounds of each bucket, and its logarithm.
+    private double gamma, logGamma;
+    // The number of values that were 0.
+    private long zeros;
+    // The counts of the buckets, from bucket offset upwards.
+    private long[] buckets;
+    private int offset;
+    // The number of values added.
+    private long count;
+    // The smallest and largest values added.
+    private double min, max;
+
+    /**
+     * Create an empty sketch.
+     * @param accuracy The relative accuracy of the quantiles, e.g. 0.01.
+     */
+    public QuantileSketch(double accuracy)
+    {
+        if(accuracy <= 0 || accuracy >= 1) {
+            throw new IllegalArgumentException("The accuracy must be between 0 and 1: " + accuracy);
+        }
+        this.accuracy = accuracy;
+        gamma = (1 + accuracy) / (1 - accuracy);
+        logGamma = Math.log(gamma);
+        buckets = new long[0];
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+    
+    /**
+     * Add a value.
+     * @param value The value, which must not be negative.
+     */
+    public void add(double value)
+    {
+        add(value, 1);
+    }
+    
+    /**
+     * Add a number of copies of a value.
+     * @param value The value, which must not be negative.
+     * @param copies The number of copies.
+     */
+    public void add(double value, long copies)
+    {
+        if(value < 0) {
+            throw new IllegalArgumentException("Values must not be negative: " + value);
+        }
+        if(copies <= 0) {
+            return;
+        }
+        if(value == 0) {
+            zeros += copies;
+        }
+        else {
+            int index = (int) Math.ceil(Math.log(value) / logGamma);
+            cover(index, index);
+            buckets[index - offset] += copies;
+        }
+        count += copies;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+    
+    /**
+     * Return a quantile of the values added.
+     * @param q The quantile, e.g. 0.5 for the median, 0.99 for the 99th percentile.
+     * @return The value at that quantile, within the relative accuracy,
+     *         or 0 if no values have been added.
+     */
+    public double quantile(double q)
+    {
+        if(q < 0 || q > 1) {
+            throw new IllegalArgumentException("The quantile must be between 0 and 1: " + q);
+        }
+        if(count == 0) {
+            return 0;
+        }
+        long rank = (long) (q * (count - 1));
+        if(rank < zeros) {
+            return 0;
+        }
+        long passed = zeros;
+        for(int i = 0; i < buckets.length; i++) {
+            passed += buckets[i];
+            if(passed > rank) {
+                // The middle of the bucket, relative to its bounds.
+                double value = 2 * Math.pow(gamma, i + offset) / (gamma + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * Return a quantile of the values added, with its range.
+     * @param q The quantile, e.g. 0.5 for the median, 0.99 for the 99th percentile.
+     * @return The estimate.
+     */
+    public Estimate estimate(double q)
+    {
+        double value = quantile(q);
+        return new Estimate(value, value * (1 - accuracy), value * (1 + accuracy), 1);
+    }
+    
+    /**
+     * Add the values of another sketch with the same accuracy to this one.
+     * @param other The sketch to merge.
+     */
+    public void merge(QuantileSketch other)
+    {
+        if(other.accuracy != accuracy) {
+            throw new IllegalArgumentException("Sketches of different accuracy cannot be merged: "
+                                               + accuracy + " and " + other.accuracy);
+        }
+        if(other.count == 0) {
+            return;
+        }
+        if(other.buckets.length > 0) {
+            cover(other.offset, other.offset + other.buckets.length - 1);
+            for(int i = 0; i < other.buckets.length; i++) {
+                buckets[other.offset + i - offset] += other.buckets[i];
+            }
+        }
+        zeros += other.zeros;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+    
+    /**
+     * @return The number of values added.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * @return The relative accuracy of the quantiles.
+     */
+    public double getAccuracy()
+    {
+        return accuracy;
+    }
+    
+    /**
+     * Make the buckets cover a range of indexes.
+     * @param first The lowest index.
+     * @param last The highest index.
+     */
+    private void cover(int first, int last)
+    {
+        if(buckets.length > 0 && first >= offset && last < offset + buckets.length) {
+            return;
+        }
+        int newOffset = buckets.length == 0 ? first : Math.min(first, offset);
+        int newLast = buckets.length == 0 ? last : Math.max(last, offset + buckets.length - 1);
+        long[] newBuckets = new long[newLast - newOffset + 1];
+        System.arraycopy(buckets, 0, newBuckets, buckets.length == 0 ? 0 : offset - newOffset,
+                         buckets.length);
+        buckets = newBuckets;
+        offset = newOffset;
+    }
+}
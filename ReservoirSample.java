@@ -0,0 +1,212 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A uniform random sample of a fixed size from a stream of log
+ * records of unknown length, held as packed LogStore records.
+ * 
+ * Once the sample is full, each record has the same chance of
+ * being in it. The records to be replaced are chosen by
+ * jumping ahead a random distance (Li's Algorithm L), so few
+ * random numbers are needed however long the stream is.
+ * 
+ * Samples of separate parts of a log can be merged into a
+ * sample of the whole, in which each part is represented in
+ * proportion to its length.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class ReservoirSample
+{
+    // z for a 95% confidence interval.
+    private static final double Z = 1.96;
+    
+    // The sampled records.
+    private long[] records;
+    // The number of records in the sample.
+    private int size;
+    // The number of records seen.
+    private long seen;
+    // The number of the next record to be sampled, once full.
+    private long next;
+    // The largest of the random keys of the records in the sample.
+    private double w;
+    private SplittableRandom random;
+
+    /**
+     * Create an empty sample.
+     * @param capacity The number of records to keep.
+     * @param seed The seed for the random choices.
+     */
+    public ReservoirSample(int capacity, long seed)
+    {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("The sample must hold a record: " + capacity);
+        }
+        records = new long[capacity];
+        random = new SplittableRandom(seed);
+        w = Math.exp(Math.log(uniform()) / capacity);
+        next = capacity + skip() + 1;
+    }
+    
+    /**
+     * Offer a record to the sample.
+     * @param record The packed record.
+     */
+    public void add(long record)
+    {
+        seen++;
+        if(size < records.length) {
+            records[size++] = record;
+        }
+        else if(seen == next) {
+            records[random.nextInt(records.length)] = record;
+            w *= Math.exp(Math.log(uniform()) / records.length);
+            next += skip() + 1;
+        }
+    }
+    
+    /**
+     * Add a sample of another part of the log to this one.
+     * Each record kept comes from one of the samples with a
+     * chance in proportion to the number of records it stands for.
+     * @param other The sample to merge.
+     */
+    public void merge(ReservoirSample other)
+    {
+        if(other.seen == 0) {
+            return;
+        }
+        if(seen + other.seen <= records.length) {
+            for(int i = 0; i < other.size; i++) {
+                add(other.records[i]);
+            }
+            return;
+        }
+        long[] mine = Arrays.copyOf(records, size);
+        long[] theirs = Arrays.copyOf(other.records, other.size);
+        shuffle(mine);
+        shuffle(theirs);
+        // The number of records still to be represented by each side.
+        double myWeight = seen;
+        double theirWeight = other.seen;
+        int fromMine = 0;
+        int fromTheirs = 0;
+        int merged = Math.min(records.length, size + other.size);
+        for(int i = 0; i < merged; i++) {
+            boolean takeMine = fromTheirs == theirs.length
+                || (fromMine < mine.length
+                    && random.nextDouble() * (myWeight + theirWeight) < myWeight);
+            if(takeMine) {
+                records[i] = mine[fromMine++];
+                myWeight -= (double) seen / mine.length;
+            }
+            else {
+                records[i] = theirs[fromTheirs++];
+                theirWeight -= (double) other.seen / theirs.length;
+            }
+        }
+        size = merged;
+        seen += other.seen;
+        next = seen + skip() + 1;
+    }
+    
+    /**
+     * Estimate how many of the records seen match a test,
+     * from how many of the sampled records do.
+     * @param matches How many of the sampled records match.
+     * @return The estimated number, with a 95% confidence range.
+     */
+    public Estimate estimateCount(int matches)
+    {
+        if(size == 0) {
+            return new Estimate(0, 0, 0, 1);
+        }
+        double p = (double) matches / size;
+        double value = p * seen;
+        double error = 0;
+        if(size < seen) {
+            // Normal approximation, corrected for sampling without replacement.
+            error = Z * seen * Math.sqrt(p * (1 - p) / size * (seen - size) / (seen - 1));
+        }
+        return new Estimate(value, Math.max(0, value - error), Math.min(seen, value + error), 0.95);
+    }
+    
+    /**
+     * Estimate the fraction of some records that also match a
+     * second test, from the sampled records.
+     * @param matches How many sampled records match both tests.
+     * @param of How many sampled records match the first test.
+     * @return The estimated fraction, with a 95% confidence range.
+     */
+    public Estimate estimateFraction(int matches, int of)
+    {
+        if(of == 0) {
+            return new Estimate(0, 0, 1, 0.95);
+        }
+        double p = (double) matches / of;
+        double error = size < seen ? Z * Math.sqrt(p * (1 - p) / of) : 0;
+        return new Estimate(p, Math.max(0, p - error), Math.min(1, p + error), 0.95);
+    }
+    
+    /**
+     * @return The number of records in the sample.
+     */
+    public int size()
+    {
+        return size;
+    }
+    
+    /**
+     * Return a sampled record.
+     * @param index The index of the record (0 to size() - 1).
+     * @return The packed record.
+     */
+    public long get(int index)
+    {
+        return records[index];
+    }
+    
+    /**
+     * @return The number of records offered to the sample.
+     */
+    public long getSeen()
+    {
+        return seen;
+    }
+    
+    /**
+     * @return The number of records to pass over before the next is sampled.
+     */
+    private long skip()
+    {
+        return (long) Math.floor(Math.log(uniform()) / Math.log(1 - w));
+    }
+    
+    /**
+     * @return A random number greater than 0 and less than 1.
+     */
+    private double uniform()
+    {
+        double u;
+        do {
+            u = random.nextDouble();
+        } while(u == 0);
+        return u;
+    }
+    
+    /**
+     * Put an array of records into a random order.
+     * @param values The records.
+     */
+    private void shuffle(long[] values)
+    {
+        for(int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue that any number of threads may put items into
+ * and take items from at once, without locks. This is Dmitry
+ * Vyukov's bounded queue: each slot holds a sequence number that
+ * says whether it is ready to be filled or emptied, so a thread
+ * claims a slot with a single compare-and-set of the head or tail.
+ *
+ * put waits while the queue is full, so a stage that produces
+ * items faster than the next stage can take them is held back
+ * rather than filling memory. A waiting thread spins briefly,
+ * then yields, then sleeps for short periods.
+ *
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class RingBuffer<T>
+{
+    // How many times to spin, and then to yield, before sleeping.
+    private static final int SPINS = 100, YIELDS = 200;
+    // How long to sleep while waiting, in nanoseconds.
+    private static final long SLEEP_NANOS = 50_000;
+
+    // The slots, and the sequence number of each.
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    // The capacity less one, for finding a position's slot.
+    private final int mask;
+    // The position of the next item to be taken.
+    private final AtomicLong head;
+    // The position of the next item to be put.
+    private final AtomicLong tail;
+    // Whether the queue has been closed.
+    private volatile boolean closed;
+
+    /**
+     * Create an empty queue.
+     * @param capacity The most items the queue can hold. This
+     *                 is rounded up to a power of two.
+     */
+    public RingBuffer(int capacity)
+    {
+        if(capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) {
+            size <<= 1;
+        }
+        items = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+        head = new AtomicLong();
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Put an item at the tail of the queue if there is room.
+     * @param item The item.
+     * @return true if it was put, false if the queue was full.
+     */
+    public boolean offer(T item)
+    {
+        long position = tail.get();
+        while(true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if(difference == 0) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    items[index] = item;
+                    // Publish the item to the thread that takes it.
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if(difference < 0) {
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take the item at the head of the queue if there is one.
+     * @return The item, or null if the queue was empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll()
+    {
+        long position = head.get();
+        while(true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if(difference == 0) {
+                if(head.compareAndSet(position, position + 1)) {
+                    T item = (T) items[index];
+                    items[index] = null;
+                    // Free the slot for the item one lap later.
+                    sequences.set(index, position + mask + 1);
+                    return item;
+                }
+                position = head.get();
+            }
+            else if(difference < 0) {
+                return null;
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Put an item at the tail of the queue, waiting
+     * for room if it is full.
+     * @param item The item.
+     * @return true if it was put, false if the queue was
+     *         closed while waiting.
+     */
+    public boolean put(T item)
+    {
+        int idle = 0;
+        while(!offer(item)) {
+            if(closed) {
+                return false;
+            }
+            idle = backOff(idle);
+        }
+        return true;
+    }
+
+    /**
+     * Take the item at the head of the queue, waiting
+     * for one if it is empty.
+     * @return The item, or null if the queue was closed while waiting.
+     */
+    public T take()
+    {
+        int idle = 0;
+        T item;
+        while((item = poll()) == null) {
+            if(closed) {
+                return null;
+            }
+            idle = backOff(idle);
+        }
+        return item;
+    }
+
+    /**
+     * Close the queue, so that threads waiting in put or take
+     * give up. Used to stop the stages around it after a failure.
+     */
+    public void close()
+    {
+        closed = true;
+    }
+
+    /**
+     * Return roughly how many items are in the queue. The
+     * answer may be out of date if other threads are using it.
+     * @return The number of items.
+     */
+    public int size()
+    {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, items.length));
+    }
+
+    /**
+     * @return The most items the queue can hold.
+     */
+    public int capacity()
+    {
+        return items.length;
+    }
+
+    /**
+     * Wait a little before trying again, for longer the
+     * more times the thread has had to wait.
+     * @param idle How many times the thread has waited.
+     * @return The new number of times.
+     */
+    private static int backOff(int idle)
+    {
+        if(idle < SPINS) {
+            Thread.onSpinWait();
+        }
+        else if(idle < YIELDS) {
+            Thread.yield();
+        }
+        else {
+            LockSupport.parkNanos(SLEEP_NANOS);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Find the busiest and quietest windows of time in a log, for
+ * any size of window and any step between the windows, e.g.
+ * the ten busiest 15 minute windows, starting every minute.
+ * 
+ * The windows are measured in buckets of a TimeBuckets, so
+ * their granularity is that of the buckets. A running total
+ * of the accesses is kept for the non-empty buckets, so the
+ * count of a window is the difference of two totals, however
+ * long it is. Only the best k windows are kept while the
+ * windows are scanned, in a heap of size k.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class SlidingWindows
+{
+    // Busiest first, and the earliest of those with the same count.
+    private static final Comparator<TimeWindow> BUSIEST =
+        Comparator.comparingLong(TimeWindow::getCount).reversed()
+                  .thenComparingLong(TimeWindow::getStart);
+    // Quietest first, and the earliest of those with the same count.
+    private static final Comparator<TimeWindow> QUIETEST =
+        Comparator.comparingLong(TimeWindow::getCount)
+                  .thenComparingLong(TimeWindow::getStart);
+    
+    // The buckets the windows are taken from.
+    private TimeBuckets buckets;
+    // The keys of the non-empty buckets, in order.
+    private long[] keys;
+    // totals[i] is the number of accesses in the buckets before keys[i].
+    private long[] totals;
+
+    /**
+     * Prepare to find windows in a set of buckets. Later changes
+     * to the buckets are not seen.
+     * @param buckets The counts to be searched.
+     */
+    public SlidingWindows(TimeBuckets buckets)
+    {
+        this.buckets = buckets;
+        keys = buckets.keys();
+        totals = new long[keys.length + 1];
+        for(int i = 0; i < keys.length; i++) {
+            totals[i + 1] = totals[i] + buckets.get(keys[i]);
+        }
+    }
+    
+    /**
+     * Return the busiest windows, busiest first.
+     * @param window The length of each window, in buckets.
+     * @param step The distance between the starts of the windows, in buckets.
+     * @param k The number of windows to return.
+     * @return Up to k windows.
+     */
+    public List<TimeWindow> busiest(int window, int step, int k)
+    {
+        return top(window, step, k, true);
+    }
+    
+    /**
+     * Return the quietest windows, quietest first.
+     * @param window The length of each window, in buckets.
+     * @param step The distance between the starts of the windows, in buckets.
+     * @param k The number of windows to return.
+     * @return Up to k windows.
+     */
+    public List<TimeWindow> quietest(int window, int step, int k)
+    {
+        return top(window, step, k, false);
+    }
+    
+    /**
+     * Return the number of accesses in a range of buckets.
+     * @param start The key of the first bucket.
+     * @param end The key of the first bucket after the range.
+     * @return The number of accesses.
+     */
+    public long count(long start, long end)
+    {
+        return totals[lowerBound(end)] - totals[lowerBound(start)];
+    }
+    
+    /**
+     * Scan the windows that lie wholly between the first and
+     * last non-empty buckets, keeping the best k. Runs of empty
+     * windows are not scanned once they cannot be kept.
+     * @param window The length of each window, in buckets.
+     * @param step The distance between the starts of the windows, in buckets.
+     * @param k The number of windows to return.
+     * @param busiest true for the busiest windows, false for the quietest.
+     * @return Up to k windows, best first.
+     */
+    private List<TimeWindow> top(int window, int step, int k, boolean busiest)
+    {
+        if(window < 1 || step < 1 || k < 1) {
+            throw new IllegalArgumentException("Window, step and k must be positive: "
+                                               + window + ", " + step + ", " + k);
+        }
+        Comparator<TimeWindow> order = busiest ? BUSIEST : QUIETEST;
+        // The worst of the best k is at the head, ready to be replaced.
+        PriorityQueue<TimeWindow> best = new PriorityQueue<>(k, order.reversed());
+        if(keys.length > 0) {
+            long last = keys[keys.length - 1];
+            // Indexes of the first key at or after the start and end of the window,
+            // which only move forward as the window does.
+            int from = 0;
+            int to = 0;
+            for(long start = keys[0]; start + window - 1 <= last; start += step) {
+                long end = start + window;
+                while(keys[from] < start) {
+                    from++;
+                }
+                while(to < keys.length && keys[to] < end) {
+                    to++;
+                }
+                long count = totals[to] - totals[from];
+                // Windows come in order of start, so a later one
+                // with the same count is never better.
+                if(best.size() < k) {
+                    best.add(new TimeWindow(buckets, start, end, count));
+                }
+                else if(busiest ? count > best.peek().getCount()
+                                : count < best.peek().getCount()) {
+                    best.poll();
+                    best.add(new TimeWindow(buckets, start, end, count));
+                }
+                if(from == to && best.size() == k) {
+                    if(busiest) {
+                        // The windows before the first to reach keys[from] are
+                        // empty too, so none of them can be kept: jump over them.
+                        start += (keys[from] - window - start) / step * step;
+                    }
+                    else if(best.peek().getCount() == 0) {
+                        // k empty windows are kept, and no later one can be quieter.
+                        break;
+                    }
+                }
+            }
+        }
+        List<TimeWindow> windows = new ArrayList<>(best);
+        Collections.sort(windows, order);
+        return windows;
+    }
+    
+    /**
+     * Find the index of the first non-empty bucket at or after a key.
+     * @param key The key.
+     * @return The index, or the number of keys if there is none.
+     */
+    private int lowerBound(long key)
+    {
+        int low = 0;
+        int high = keys.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(keys[middle] < key) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,310 @@
+import java.util.Arrays;
+
+/**
+ * Count accesses in time buckets of a fixed granularity:
+ * minutes, hours, days or months. Each bucket is identified by
+ * a key that counts the buckets since 1970-01-01, so keys of
+ * consecutive buckets are consecutive numbers.
+ * 
+ * No range of dates needs to be given in advance. The counts
+ * are held in an array covering the keys seen so far, which
+ * grows in either direction as needed. If the keys seen are
+ * spread too widely for that to be sensible, the counts are
+ * moved into a hash table holding only the non-empty buckets.
+ * 
+ * TimeBuckets is a LogAggregator, so several granularities can
+ * be counted in a single pass by adding them to a LogAnalyzer.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class TimeBuckets implements LogAggregator
+{
+    /**
+     * The sizes of bucket that can be counted.
+     */
+    public enum Granularity
+    {
+        MINUTE, HOUR, DAY, MONTH
+    }
+    
+    // The widest range of keys held in an array.
+    private static final int MAX_DENSE_SPAN = 1 << 22;
+    // Marks an unused slot in the hash table.
+    private static final long EMPTY = Long.MIN_VALUE;
+    
+    // The size of the buckets.
+    private Granularity granularity;
+    // The lowest and highest keys counted so far.
+    private long firstKey, lastKey;
+    // The counts, when held in an array, or null.
+    private int[] dense;
+    // The key of dense[0].
+    private long base;
+    // The keys and counts, when held in a hash table.
+    private long[] sparseKeys;
+    private int[] sparseCounts;
+    // The number of keys in the hash table.
+    private int sparseSize;
+    
+    // For finding the key of the previous entry quickly.
+    private long lastTimeKey;
+    private long lastBucket;
+
+    /**
+     * Create an empty set of buckets.
+     * @param granularity The size of the buckets.
+     */
+    public TimeBuckets(Granularity granularity)
+    {
+        this.granularity = granularity;
+        firstKey = Long.MAX_VALUE;
+        lastKey = Long.MIN_VALUE;
+        dense = new int[0];
+        lastTimeKey = -1;
+    }
+    
+    /**
+     * Count an entry in its bucket.
+     * @param entry The entry to be counted.
+     */
+    public void record(LogEntry entry)
+    {
+        // Sorted logs have long runs of entries in the same bucket.
+        long timeKey = entry.getWhen();
+        if(timeKey != lastTimeKey) {
+            lastTimeKey = timeKey;
+            lastBucket = keyOf(entry.getYear(), entry.getMonth(), entry.getDay(),
+                               entry.getHour(), entry.getMinute());
+        }
+        add(lastBucket, 1);
+    }
+    
+    /**
+     * Return the key of the bucket holding a time.
+     * @param year The year
+     * @param month The month (1-12)
+     * @param day The day (1-31)
+     * @param hour The hour (0-23)
+     * @param minute The minute (0-59)
+     * @return The key of the bucket.
+     */
+    public long keyOf(int year, int month, int day, int hour, int minute)
+    {
+        switch(granularity) {
+            case MINUTE:
+                return (LogEntry.epochDay(year, month, day) * 24 + hour) * 60 + minute;
+            case HOUR:
+                return LogEntry.epochDay(year, month, day) * 24 + hour;
+            case DAY:
+                return LogEntry.epochDay(year, month, day);
+            default:
+                return (year - 1970) * 12L + month - 1;
+        }
+    }
+    
+    /**
+     * Describe the start of a bucket, e.g. "2017-03-01 14:05".
+     * @param key The key of the bucket.
+     * @return The description.
+     */
+    public String describe(long key)
+    {
+        if(granularity == Granularity.MONTH) {
+            return String.format("%04d-%02d", 1970 + Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1);
+        }
+        long minutes = key;
+        if(granularity == Granularity.HOUR) {
+            minutes = key * 60;
+        }
+        else if(granularity == Granularity.DAY) {
+            minutes = key * 24 * 60;
+        }
+        int[] date = new int[3];
+        LogEntry.epochDate(Math.floorDiv(minutes, 24 * 60), date);
+        int minuteOfDay = Math.floorMod(minutes, 24 * 60);
+        String text = String.format("%04d-%02d-%02d", date[0], date[1], date[2]);
+        if(granularity == Granularity.DAY) {
+            return text;
+        }
+        return text + String.format(" %02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+    }
+    
+    /**
+     * Add to the count of a bucket.
+     * @param key The key of the bucket.
+     * @param count The number to add.
+     */
+    public void add(long key, int count)
+    {
+        firstKey = Math.min(firstKey, key);
+        lastKey = Math.max(lastKey, key);
+        if(dense != null) {
+            long index = key - base;
+            if(index < 0 || index >= dense.length) {
+                grow(key);
+            }
+        }
+        if(dense != null) {
+            dense[(int) (key - base)] += count;
+        }
+        else {
+            sparseAdd(key, count);
+        }
+    }
+    
+    /**
+     * Return the count of a bucket.
+     * @param key The key of the bucket.
+     * @return The count, 0 if nothing has been counted in it.
+     */
+    public int get(long key)
+    {
+        if(dense != null) {
+            long index = key - base;
+            return index >= 0 && index < dense.length ? dense[(int) index] : 0;
+        }
+        return sparseCounts[sparseSlot(key)];
+    }
+    
+    /**
+     * Return the keys of every non-empty bucket, in order.
+     * @return The keys.
+     */
+    public long[] keys()
+    {
+        long[] keys;
+        int count = 0;
+        if(dense != null) {
+            keys = new long[dense.length];
+            for(int i = 0; i < dense.length; i++) {
+                if(dense[i] != 0) {
+                    keys[count++] = base + i;
+                }
+            }
+        }
+        else {
+            keys = new long[sparseSize];
+            for(int slot = 0; slot < sparseKeys.length; slot++) {
+                if(sparseKeys[slot] != EMPTY && sparseCounts[slot] != 0) {
+                    keys[count++] = sparseKeys[slot];
+                }
+            }
+            Arrays.sort(keys, 0, count);
+        }
+        return Arrays.copyOf(keys, count);
+    }
+    
+    /**
+     * @return The size of the buckets.
+     */
+    public Granularity getGranularity()
+    {
+        return granularity;
+    }
+    
+    /**
+     * @return true if nothing has been counted.
+     */
+    public boolean isEmpty()
+    {
+        return firstKey > lastKey;
+    }
+    
+    /**
+     * @return The lowest key counted so far.
+     */
+    public long getFirstKey()
+    {
+        return firstKey;
+    }
+    
+    /**
+     * @return The highest key counted so far.
+     */
+    public long getLastKey()
+    {
+        return lastKey;
+    }
+    
+    /**
+     * Make the array of counts cover a new key, or move the
+     * counts into a hash table if the range is too wide.
+     * @param key The key to be covered.
+     */
+    private void grow(long key)
+    {
+        if(lastKey - firstKey >= MAX_DENSE_SPAN) {
+            int[] counts = dense;
+            dense = null;
+            sparseKeys = new long[16];
+            Arrays.fill(sparseKeys, EMPTY);
+            sparseCounts = new int[16];
+            sparseSize = 0;
+            for(int i = 0; i < counts.length; i++) {
+                if(counts[i] != 0) {
+                    sparseAdd(base + i, counts[i]);
+                }
+            }
+            return;
+        }
+        // Leave room to grow further in the same direction.
+        long span = lastKey - firstKey + 1;
+        long length = Math.min(Math.max(span, dense.length * 2L), MAX_DENSE_SPAN);
+        long newBase = key < base ? lastKey - length + 1 : firstKey;
+        int[] counts = new int[(int) length];
+        // Every count outside the new range is zero.
+        long from = Math.max(base, newBase);
+        long to = Math.min(base + dense.length, newBase + length);
+        if(from < to) {
+            System.arraycopy(dense, (int) (from - base), counts, (int) (from - newBase), (int) (to - from));
+        }
+        dense = counts;
+        base = newBase;
+    }
+    
+    /**
+     * Add to a count in the hash table.
+     * @param key The key of the bucket.
+     * @param count The number to add.
+     */
+    private void sparseAdd(long key, int count)
+    {
+        int slot = sparseSlot(key);
+        if(sparseKeys[slot] == EMPTY) {
+            sparseKeys[slot] = key;
+            sparseSize++;
+            if(sparseSize * 2 > sparseKeys.length) {
+                long[] oldKeys = sparseKeys;
+                int[] oldCounts = sparseCounts;
+                sparseKeys = new long[oldKeys.length * 2];
+                Arrays.fill(sparseKeys, EMPTY);
+                sparseCounts = new int[oldKeys.length * 2];
+                sparseSize = 0;
+                for(int i = 0; i < oldKeys.length; i++) {
+                    if(oldKeys[i] != EMPTY) {
+                        sparseAdd(oldKeys[i], oldCounts[i]);
+                    }
+                }
+                slot = sparseSlot(key);
+            }
+        }
+        sparseCounts[slot] += count;
+    }
+    
+    /**
+     * Find the slot of the hash table that holds a key,
+     * or the empty slot where it would be placed.
+     * @param key The key.
+     * @return The slot.
+     */
+    private int sparseSlot(long key)
+    {
+        int mask = sparseKeys.length - 1;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+        while(sparseKeys[slot] != EMPTY && sparseKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * A window of time buckets and the number of accesses in it,
+ * as found by SlidingWindows.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class TimeWindow
+{
+    // The buckets the window was taken from.
+    private TimeBuckets buckets;
+    // The key of the first bucket in the window.
+    private long start;
+    // The key of the first bucket after the window.
+    private long end;
+    // The number of accesses in the window.
+    private long count;
+
+    /**
+     * Create a window.
+     * @param buckets The buckets the window was taken from.
+     * @param start The key of the first bucket in the window.
+     * @param end The key of the first bucket after the window.
+     * @param count The number of accesses in the window.
+     */
+    public TimeWindow(TimeBuckets buckets, long start, long end, long count)
+    {
+        this.buckets = buckets;
+        this.start = start;
+        this.end = end;
+        this.count = count;
+    }
+    
+    /**
+     * @return The key of the first bucket in the window.
+     */
+    public long getStart()
+    {
+        return start;
+    }
+    
+    /**
+     * @return The key of the first bucket after the window.
+     */
+    public long getEnd()
+    {
+        return end;
+    }
+    
+    /**
+     * @return The number of accesses in the window.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * @return The window and its count, e.g.
+     *         "2017-03-01 14:00 to 2017-03-01 14:15: 42".
+     */
+    public String toString()
+    {
+        return buckets.describe(start) + " to " + buckets.describe(end) + ": " + count;
+    }
+}
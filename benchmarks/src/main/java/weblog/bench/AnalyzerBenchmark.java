@@ -0,0 +1,185 @@
+package weblog.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weblog.EncodedLogRuns;
+import weblog.LogAnalyzer;
+import weblog.LogStore;
+import weblog.LogfileReader;
+
+/**
+ * Time each of the analyses of LogAnalyzer over a whole log file,
+ * including the five separate analyses against the single pass of
+ * analyzeAll, and the parallel, pipelined, rollup and run-length
+ * versions of analyzeAll. Each score is the time for one analysis.
+ * 
+ * The log is copied to a temporary directory first, so the
+ * rollup saved by analyzeFromRollup does not land in the project.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class AnalyzerBenchmark
+{
+    // The year used for the status codes.
+    private static final int YEAR = 2017;
+    
+    // The log file to analyze.
+    @Param({"a", "big"})
+    private String filename;
+    // How the analyzer's reader reads it.
+    @Param({"LOAD", "COLUMNAR"})
+    private LogfileReader.Mode mode;
+    
+    // The copy of the log file.
+    private File file;
+    // The analyzer being timed.
+    private LogAnalyzer analyzer;
+    // The log held as runs, for analyzeRuns.
+    private EncodedLogRuns runs;
+
+    /**
+     * Copy the log file, and create the analyzer and runs.
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        file = BenchmarkFiles.copyToTemp(filename);
+        analyzer = new LogAnalyzer(new LogfileReader(file.getPath(), mode));
+        runs = EncodedLogRuns.encode(LogStore.load(file));
+    }
+
+    /**
+     * Remove the copy of the log file and its rollup.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        BenchmarkFiles.deleteTemp(file.getParentFile());
+    }
+
+    /**
+     * Count the accesses in each hour.
+     */
+    @Benchmark
+    public void analyzeHourlyData()
+    {
+        analyzer.analyzeHourlyData();
+    }
+
+    /**
+     * Count the accesses on each day of the month.
+     */
+    @Benchmark
+    public void analyzeDailyData()
+    {
+        analyzer.analyzeDailyData();
+    }
+
+    /**
+     * Count the accesses in each month.
+     */
+    @Benchmark
+    public void analyzeMonthlyData()
+    {
+        analyzer.analyzeMonthlyData();
+    }
+
+    /**
+     * Count the accesses in each month of each year.
+     */
+    @Benchmark
+    public void analyzeYearMonth()
+    {
+        analyzer.analyzeYearMonth();
+    }
+
+    /**
+     * Count the status codes in each month of each year.
+     */
+    @Benchmark
+    public void analyzeStatusCodes()
+    {
+        analyzer.analyzeStatusCodes(YEAR);
+    }
+
+    /**
+     * Make all five counts with five passes over the log.
+     */
+    @Benchmark
+    public void analyzeSeparately()
+    {
+        analyzer.analyzeHourlyData();
+        analyzer.analyzeDailyData();
+        analyzer.analyzeMonthlyData();
+        analyzer.analyzeYearMonth();
+        analyzer.analyzeStatusCodes(YEAR);
+    }
+
+    /**
+     * Make all five counts with a single pass over the log.
+     */
+    @Benchmark
+    public void analyzeAll()
+    {
+        analyzer.analyzeAll(YEAR);
+    }
+
+    /**
+     * Make all five counts with a worker for each processor.
+     */
+    @Benchmark
+    public void analyzeParallel() throws IOException
+    {
+        analyzer.analyzeParallel(YEAR);
+    }
+
+    /**
+     * Make all five counts with a pipeline of two parsing threads.
+     */
+    @Benchmark
+    public void analyzePipelined() throws IOException
+    {
+        analyzer.analyzePipelined(YEAR, 2);
+    }
+
+    /**
+     * Make all five counts from the saved rollup, which
+     * is built by the first call.
+     */
+    @Benchmark
+    public void analyzeFromRollup() throws IOException
+    {
+        analyzer.analyzeFromRollup(YEAR);
+    }
+
+    /**
+     * Make all five counts from the log held as runs.
+     */
+    @Benchmark
+    public void analyzeRuns()
+    {
+        analyzer.analyzeRuns(runs, YEAR);
+    }
+}
@@ -0,0 +1,63 @@
+package weblog.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Find and copy the log files used by the benchmarks.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+public class BenchmarkFiles
+{
+    /**
+     * Find a log file in the current directory. LogfileReader uses
+     * simulated data when it cannot find a file, which would make
+     * the timings meaningless, so a missing file is an error.
+     * @param filename The name of the file, e.g. "big".
+     * @return The file.
+     */
+    public static File find(String filename)
+    {
+        File file = new File(filename);
+        if(!file.isFile()) {
+            throw new IllegalStateException("Cannot find " + file.getAbsolutePath()
+                                            + ": run the benchmarks from the project directory");
+        }
+        return file;
+    }
+
+    /**
+     * Copy a log file into a new temporary directory, so that files
+     * written alongside it, such as rollups, do not land in the project.
+     * @param filename The name of the file, e.g. "big".
+     * @return The copy.
+     */
+    public static File copyToTemp(String filename) throws IOException
+    {
+        File file = find(filename);
+        Path directory = Files.createTempDirectory("weblog-bench");
+        Path copy = directory.resolve(file.getName());
+        Files.copy(file.toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+        return copy.toFile();
+    }
+
+    /**
+     * Delete a temporary directory and the files in it.
+     * @param directory The directory.
+     */
+    public static void deleteTemp(File directory)
+    {
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
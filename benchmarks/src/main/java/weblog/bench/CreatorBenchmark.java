@@ -0,0 +1,80 @@
+package weblog.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weblog.LogfileCreator;
+
+/**
+ * Time writing log files of 10^5, 10^6 and 10^7 entries with
+ * LogfileCreator. Each file takes long enough to write that every
+ * call is timed on its own.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CreatorBenchmark
+{
+    // The seed for the random entries.
+    private static final long SEED = 42;
+    
+    // How many entries to write.
+    @Param({"100000", "1000000", "10000000"})
+    private long entries;
+    
+    // The creator being timed.
+    private LogfileCreator creator;
+    // The file written.
+    private File file;
+
+    /**
+     * Create the creator and choose the file to write.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        creator = new LogfileCreator();
+        file = File.createTempFile("weblog-bench", ".log");
+    }
+
+    /**
+     * Remove the file written.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    /**
+     * Write the file with a thread for each processor.
+     */
+    @Benchmark
+    public void createFile()
+    {
+        if(!creator.createFile(file.getPath(), entries, SEED)) {
+            throw new IllegalStateException("Could not write " + file);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package weblog.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import weblog.BinaryLogFormat;
+import weblog.LogEntry;
+import weblog.LogfileReader;
+
+/**
+ * Time creating a LogfileReader in each mode, and reading every
+ * entry from it. The BINARY mode reads a copy of the log converted
+ * by BinaryLogFormat.
+ * 
+ * Run with -prof gc to compare the memory each mode allocates to
+ * hold the log (gc.alloc.rate.norm), e.g. LogEntry objects in the
+ * LOAD mode against packed records in the COLUMNAR mode.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ReaderBenchmark
+{
+    // The log file to read.
+    @Param({"a", "big"})
+    private String filename;
+    // How it is read.
+    @Param({"LOAD", "STREAM", "MAPPED", "COLUMNAR", "BINARY", "OFF_HEAP"})
+    private LogfileReader.Mode mode;
+    
+    // The file actually read in this mode.
+    private File file;
+
+    /**
+     * Find the log file, converting it for the BINARY mode.
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        file = BenchmarkFiles.find(filename);
+        if(mode == LogfileReader.Mode.BINARY) {
+            File binary = File.createTempFile("weblog-bench", ".wlog");
+            binary.deleteOnExit();
+            BinaryLogFormat.convert(file, binary);
+            file = binary;
+        }
+    }
+
+    /**
+     * Remove the converted copy of the log.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        if(mode == LogfileReader.Mode.BINARY) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Create a reader, which loads the whole file in some modes.
+     * @return The reader.
+     */
+    @Benchmark
+    public LogfileReader construct()
+    {
+        return new LogfileReader(file.getPath(), mode);
+    }
+
+    /**
+     * Create a reader and read every entry from it.
+     */
+    @Benchmark
+    public void readAll(Blackhole blackhole)
+    {
+        LogfileReader reader = new LogfileReader(file.getPath(), mode);
+        while(reader.hasNext()) {
+            LogEntry entry = reader.next();
+            blackhole.consume(entry.getMinute());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package weblog.bench;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weblog.LogEntry;
+import weblog.LogSorter;
+import weblog.LogStore;
+import weblog.LogfileCreator;
+import weblog.OffHeapLogStore;
+
+/**
+ * Time sorting random log entries: as Calendars, as LogEntry
+ * objects compared by time key, with LogSorter's radix sort of
+ * entries and of packed LogStore records, and in place in an
+ * OffHeapLogStore. Each score includes copying the unsorted data.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SortBenchmark
+{
+    // How many entries to sort.
+    @Param({"10000", "1000000"})
+    private int size;
+    
+    // The unsorted entries.
+    private LogEntry[] entries;
+    // The same entries as packed records.
+    private long[] records;
+
+    /**
+     * Create the random entries.
+     */
+    @Setup
+    public void setUp()
+    {
+        LogfileCreator creator = new LogfileCreator();
+        entries = new LogEntry[size];
+        records = new long[size];
+        for(int i = 0; i < size; i++) {
+            LogEntry entry = creator.createEntry();
+            entries[i] = entry;
+            records[i] = LogStore.pack(entry.getYear(), entry.getMonth(), entry.getDay(),
+                                       entry.getHour(), entry.getMinute(), entry.getCode());
+        }
+    }
+
+    /**
+     * Convert each entry to a Calendar and sort those.
+     * @return The sorted Calendars.
+     */
+    @Benchmark
+    public Calendar[] calendar()
+    {
+        Calendar[] whens = new Calendar[size];
+        for(int i = 0; i < size; i++) {
+            LogEntry entry = entries[i];
+            Calendar when = Calendar.getInstance();
+            when.set(entry.getYear(), entry.getMonth() - 1, entry.getDay() - 1,
+                     entry.getHour(), entry.getMinute());
+            whens[i] = when;
+        }
+        Arrays.sort(whens);
+        return whens;
+    }
+
+    /**
+     * Sort the entries with Arrays.sort, which uses compareTo.
+     * @return The sorted entries.
+     */
+    @Benchmark
+    public LogEntry[] compareTo()
+    {
+        LogEntry[] sorted = entries.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Sort the entries with LogSorter.
+     * @return The sorted entries.
+     */
+    @Benchmark
+    public LogEntry[] radixEntries()
+    {
+        LogEntry[] sorted = entries.clone();
+        LogSorter.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Sort the packed records with LogSorter.
+     * @return The sorted records.
+     */
+    @Benchmark
+    public long[] radixPacked()
+    {
+        long[] sorted = records.clone();
+        LogSorter.sort(sorted, size);
+        return sorted;
+    }
+
+    /**
+     * Copy the packed records into direct memory and sort them there.
+     * The store is closed afterwards, so its direct memory can be
+     * reclaimed before the next call needs more.
+     * @return The first record, which is the earliest.
+     */
+    @Benchmark
+    public long offHeap()
+    {
+        OffHeapLogStore store = new OffHeapLogStore();
+        try {
+            for(long record : records) {
+                store.add(record);
+            }
+            store.sort();
+            return store.get(0);
+        }
+        finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package weblog.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import weblog.LoglineParser;
+import weblog.LoglineTokenizer;
+
+/**
+ * Time breaking up every line of a log file: with a Scanner, as
+ * LoglineTokenizer originally did, with LoglineTokenizer.tokenize,
+ * and with a LoglineParser reading the bytes of the file directly.
+ * Each score is the time for the whole file.
+ * 
+ * @author Erik Cooke
+ * @version 2026.10.18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TokenizerBenchmark
+{
+    // The log file to tokenize.
+    @Param({"a", "big"})
+    private String filename;
+    
+    // The lines of the file, as text.
+    private String[] lines;
+    // The contents of the file.
+    private byte[] bytes;
+    // The start of each line in bytes, plus one past the end of the last.
+    private int[] lineStarts;
+    // The tokenizer and parser being timed.
+    private LoglineTokenizer tokenizer;
+    private LoglineParser parser;
+    // Where the values are placed.
+    private int[] fields;
+
+    /**
+     * Read the log file.
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        bytes = Files.readAllBytes(Paths.get(filename));
+        lines = new String(bytes, StandardCharsets.ISO_8859_1).split("\n");
+        ArrayList<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for(int i = 0; i < bytes.length; i++) {
+            if(bytes[i] == '\n') {
+                starts.add(i + 1);
+            }
+        }
+        if(starts.get(starts.size() - 1) != bytes.length) {
+            // The final line has no terminator.
+            starts.add(bytes.length + 1);
+        }
+        lineStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        tokenizer = new LoglineTokenizer();
+        parser = new LoglineParser((logline, problem) -> {
+            throw new IllegalArgumentException(problem + ": " + logline);
+        });
+        fields = new int[6];
+    }
+
+    /**
+     * Break up each line with a new Scanner, as the baseline.
+     */
+    @Benchmark
+    public void scanner(Blackhole blackhole)
+    {
+        for(String line : lines) {
+            Scanner scanner = new Scanner(line);
+            for(int i = 0; i < fields.length; i++) {
+                fields[i] = scanner.nextInt();
+            }
+            blackhole.consume(fields[5]);
+        }
+    }
+
+    /**
+     * Break up each line with LoglineTokenizer.tokenize.
+     */
+    @Benchmark
+    public void tokenize(Blackhole blackhole)
+    {
+        for(String line : lines) {
+            blackhole.consume(tokenizer.tokenize(line, fields));
+            blackhole.consume(fields[5]);
+        }
+    }
+
+    /**
+     * Parse each line directly from the bytes of the file.
+     */
+    @Benchmark
+    public void parseBytes(Blackhole blackhole)
+    {
+        for(int i = 0; i < lineStarts.length - 1; i++) {
+            blackhole.consume(parser.parse(bytes, lineStarts[i], lineStarts[i + 1] - 1, fields));
+            blackhole.consume(fields[5]);
+        }
+    }
+}